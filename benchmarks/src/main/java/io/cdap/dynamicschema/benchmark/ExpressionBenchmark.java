@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.benchmark;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.dynamicschema.api.Expression;
+import io.cdap.dynamicschema.api.ExpressionException;
+import io.cdap.dynamicschema.api.ExpressionResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of row key expressions against narrow records, through JEXL and through {@link ExpressionResolver}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+  private static final int RECORDS = 1024;
+
+  @Param({"id", "id + ':' + name", "id + ':' + count", "name.toUpperCase()"})
+  public String expression;
+
+  private Expression compiled;
+  private ExpressionResolver resolver;
+  private StructuredRecord[] records;
+  private int next;
+
+  @Setup
+  public void setup() throws ExpressionException {
+    compiled = new Expression(expression);
+    resolver = ExpressionResolver.of(compiled);
+    records = RecordShape.NARROW.records(RECORDS);
+  }
+
+  @Benchmark
+  public String apply() throws ExpressionException {
+    return compiled.apply(nextRecord());
+  }
+
+  @Benchmark
+  public String resolve() throws ExpressionException {
+    return resolver.resolve(nextRecord());
+  }
+
+  private StructuredRecord nextRecord() {
+    StructuredRecord record = records[next];
+    next = (next + 1) % records.length;
+    return record;
+  }
+}
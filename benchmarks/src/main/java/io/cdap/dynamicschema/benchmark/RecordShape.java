@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.benchmark;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shapes of records written by the benchmarks.
+ *
+ * Every shape has a string 'id' field used as row key, followed by the fields specific to the shape.
+ */
+public enum RecordShape {
+  /**
+   * A handful of simple fields.
+   */
+  NARROW {
+    @Override
+    Schema schema() {
+      return Schema.recordOf(
+        "narrow",
+        Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+        Schema.Field.of("amount", Schema.of(Schema.Type.DOUBLE)),
+        Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)));
+    }
+
+    @Override
+    void fill(StructuredRecord.Builder builder, int i) {
+      builder.set("name", "name-" + i).set("count", i).set("amount", i * 0.5d).set("active", i % 2 == 0);
+    }
+  },
+
+  /**
+   * Many simple fields of mixed types.
+   */
+  WIDE {
+    @Override
+    Schema schema() {
+      List<Schema.Field> fields = new ArrayList<>();
+      fields.add(Schema.Field.of("id", Schema.of(Schema.Type.STRING)));
+      for (int c = 0; c < COLUMNS; ++c) {
+        Schema.Type type = c % 3 == 0 ? Schema.Type.STRING : c % 3 == 1 ? Schema.Type.LONG : Schema.Type.DOUBLE;
+        fields.add(Schema.Field.of("c" + c, Schema.nullableOf(Schema.of(type))));
+      }
+      return Schema.recordOf("wide", fields);
+    }
+
+    @Override
+    void fill(StructuredRecord.Builder builder, int i) {
+      for (int c = 0; c < COLUMNS; ++c) {
+        if (c % 3 == 0) {
+          builder.set("c" + c, "value-" + i + "-" + c);
+        } else if (c % 3 == 1) {
+          builder.set("c" + c, (long) i * c);
+        } else {
+          builder.set("c" + c, i * 0.1d);
+        }
+      }
+    }
+  },
+
+  /**
+   * Dynamic columns held in a map.
+   */
+  MAP {
+    @Override
+    Schema schema() {
+      return Schema.recordOf(
+        "map",
+        Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))));
+    }
+
+    @Override
+    void fill(StructuredRecord.Builder builder, int i) {
+      Map<String, String> map = new HashMap<>();
+      for (int c = 0; c < COLUMNS; ++c) {
+        map.put("col" + c, "value-" + i + "-" + c);
+      }
+      builder.set("m", map);
+    }
+  },
+
+  /**
+   * Dynamic columns held in an array of typed 'field', 'value' and 'type' records.
+   */
+  ARRAY {
+    @Override
+    Schema schema() {
+      return Schema.recordOf(
+        "array",
+        Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("l", Schema.arrayOf(DYNAMIC_FIELD)));
+    }
+
+    @Override
+    void fill(StructuredRecord.Builder builder, int i) {
+      List<StructuredRecord> fields = new ArrayList<>();
+      for (int c = 0; c < COLUMNS; ++c) {
+        String type = c % 3 == 0 ? "string" : c % 3 == 1 ? "long" : "double";
+        String value = c % 3 == 0 ? "value-" + i + "-" + c
+          : c % 3 == 1 ? String.valueOf((long) i * c) : String.valueOf(i * 0.1d);
+        fields.add(StructuredRecord.builder(DYNAMIC_FIELD)
+                     .set("field", "col" + c).set("value", value).set("type", type).build());
+      }
+      builder.set("l", fields);
+    }
+  };
+
+  /**
+   * Number of columns of the wide, map and array shapes.
+   */
+  static final int COLUMNS = 100;
+
+  private static final Schema DYNAMIC_FIELD = Schema.recordOf(
+    "field",
+    Schema.Field.of("field", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("value", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("type", Schema.of(Schema.Type.STRING)));
+
+  abstract Schema schema();
+
+  abstract void fill(StructuredRecord.Builder builder, int i);
+
+  /**
+   * @param count number of records.
+   * @return distinct records of this shape sharing the same schema instance.
+   */
+  public StructuredRecord[] records(int count) {
+    Schema schema = schema();
+    StructuredRecord[] records = new StructuredRecord[count];
+    for (int i = 0; i < count; ++i) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema).set("id", "row-" + i);
+      fill(builder, i);
+      records[i] = builder.build();
+    }
+    return records;
+  }
+}
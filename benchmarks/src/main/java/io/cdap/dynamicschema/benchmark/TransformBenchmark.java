@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.benchmark;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.cdap.etl.api.Emitter;
+import io.cdap.cdap.etl.api.InvalidEntry;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
+import io.cdap.dynamicschema.DynamicSchemaHBaseSink;
+import io.cdap.dynamicschema.DynamicSchemaTableSink;
+import io.cdap.dynamicschema.HBaseSinkConfig;
+import io.cdap.dynamicschema.TableSinkConfig;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.io.NullWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@code transform} of the DynHBase and DynTable sinks, from record to emitted put.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+  private static final int RECORDS = 1024;
+
+  @Param({"NARROW", "WIDE", "MAP", "ARRAY"})
+  public RecordShape shape;
+
+  @Param({"id", "id + ':' + 'suffix'"})
+  public String rowkey;
+
+  private StructuredRecord[] records;
+  private DynamicSchemaHBaseSink hbaseSink;
+  private DynamicSchemaTableSink tableSink;
+  private BlackholeEmitter<KeyValue<NullWritable, Mutation>> hbaseEmitter;
+  private BlackholeEmitter<KeyValue<byte[], Put>> tableEmitter;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    records = shape.records(RECORDS);
+
+    BatchRuntimeContext context = noop(BatchRuntimeContext.class);
+    hbaseSink = new DynamicSchemaHBaseSink(HBaseSinkConfig.builder()
+                                             .setReferenceName("benchmark")
+                                             .setTable("benchmark")
+                                             .setRowkey(rowkey)
+                                             .setFamily("'cf'")
+                                             .build());
+    hbaseSink.initialize(context);
+    tableSink = new DynamicSchemaTableSink(TableSinkConfig.builder()
+                                             .setReferenceName("benchmark")
+                                             .setTable("benchmark")
+                                             .setRowkey(rowkey)
+                                             .build());
+    tableSink.initialize(context);
+
+    hbaseEmitter = new BlackholeEmitter<>();
+    tableEmitter = new BlackholeEmitter<>();
+  }
+
+  @TearDown
+  public void tearDown() {
+    hbaseSink.destroy();
+    tableSink.destroy();
+  }
+
+  @Benchmark
+  public void hbaseTransform(Blackhole blackhole) throws Exception {
+    hbaseEmitter.blackhole = blackhole;
+    hbaseSink.transform(nextRecord(), hbaseEmitter);
+  }
+
+  @Benchmark
+  public void tableTransform(Blackhole blackhole) throws Exception {
+    tableEmitter.blackhole = blackhole;
+    tableSink.transform(nextRecord(), tableEmitter);
+  }
+
+  private StructuredRecord nextRecord() {
+    StructuredRecord record = records[next];
+    next = (next + 1) % records.length;
+    return record;
+  }
+
+  /**
+   * Creates an implementation of the interface that does nothing and returns defaults: false, zero, empty maps,
+   * no-op implementations of the metrics interfaces, and null for other objects.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T noop(Class<T> type) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+      Class<?> returnType = method.getReturnType();
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "noop " + type.getName();
+        default:
+          break;
+      }
+      if (returnType == void.class) {
+        return null;
+      } else if (returnType.isPrimitive()) {
+        return Array.get(Array.newInstance(returnType, 1), 0);
+      } else if (Metrics.class.isAssignableFrom(returnType)) {
+        return noop(returnType);
+      } else if (returnType == Map.class) {
+        return Collections.emptyMap();
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Emitter consuming emitted values so that they are not optimized away.
+   */
+  private static final class BlackholeEmitter<T> implements Emitter<T> {
+    private Blackhole blackhole;
+
+    @Override
+    public void emit(T value) {
+      blackhole.consume(value);
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      blackhole.consume(payload);
+    }
+
+    @Override
+    public void emitError(InvalidEntry<T> invalidEntry) {
+      blackhole.consume(invalidEntry);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.benchmark;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.dynamicschema.HBasePutGenerator;
+import io.cdap.dynamicschema.QualifierCache;
+import io.cdap.dynamicschema.TablePutGenerator;
+import io.cdap.dynamicschema.observer.StructuredRecordObserver;
+import io.cdap.dynamicschema.observer.WritePlan;
+import io.cdap.dynamicschema.observer.WritePlanCache;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Put;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of records into puts, by the generic {@link StructuredRecordObserver} and by compiled write plans,
+ * with a new generator per record or a generator reused across records as the sinks do.
+ *
+ * {@code keyedObserverTable} and {@code keyedReusedTable} include the encoding of the row key of the DynTable sink,
+ * before and after it moved to the compiled write path, and are best compared with {@code -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraverseBenchmark {
+  private static final int RECORDS = 1024;
+  private static final byte[] FAMILY = Bytes.toBytes("cf");
+
+  @Param({"NARROW", "WIDE", "MAP", "ARRAY"})
+  public RecordShape shape;
+
+  private StructuredRecord[] records;
+  private String[] keys;
+  private byte[][] rows;
+  private WritePlanCache plans;
+  private HBasePutGenerator hbaseGenerator;
+  private TablePutGenerator tableGenerator;
+  private int next;
+
+  @Setup
+  public void setup() {
+    records = shape.records(RECORDS);
+    keys = new String[RECORDS];
+    rows = new byte[RECORDS][];
+    for (int i = 0; i < RECORDS; ++i) {
+      keys[i] = records[i].get("id");
+      rows[i] = Bytes.toBytes(keys[i]);
+    }
+    plans = new WritePlanCache();
+    hbaseGenerator = new HBasePutGenerator(Durability.SYNC_WAL, new QualifierCache());
+    tableGenerator = new TablePutGenerator(new QualifierCache());
+  }
+
+  @Benchmark
+  public Put observerHBase() throws Exception {
+    int i = nextIndex();
+    HBasePutGenerator generator = new HBasePutGenerator(rows[i], FAMILY, Durability.SYNC_WAL);
+    new StructuredRecordObserver(generator).traverse(records[i]);
+    return generator.get();
+  }
+
+  @Benchmark
+  public io.cdap.cdap.api.dataset.table.Put observerTable() throws Exception {
+    int i = nextIndex();
+    TablePutGenerator generator = new TablePutGenerator(rows[i]);
+    new StructuredRecordObserver(generator).traverse(records[i]);
+    return generator.get();
+  }
+
+  @Benchmark
+  public Put planHBase() throws Exception {
+    int i = nextIndex();
+    HBasePutGenerator generator = new HBasePutGenerator(rows[i], FAMILY, Durability.SYNC_WAL);
+    plans.get(records[i].getSchema()).traverse(records[i], generator);
+    return generator.get();
+  }
+
+  @Benchmark
+  public io.cdap.cdap.api.dataset.table.Put planTable() throws Exception {
+    int i = nextIndex();
+    TablePutGenerator generator = new TablePutGenerator(rows[i]);
+    plans.get(records[i].getSchema()).traverse(records[i], generator);
+    return generator.get();
+  }
+
+  @Benchmark
+  public Put reusedHBase() throws Exception {
+    int i = nextIndex();
+    WritePlan plan = plans.get(records[i].getSchema());
+    hbaseGenerator.reset(rows[i], FAMILY, plan.countColumns(records[i]));
+    plan.traverse(records[i], hbaseGenerator);
+    return hbaseGenerator.get();
+  }
+
+  @Benchmark
+  public io.cdap.cdap.api.dataset.table.Put reusedTable() throws Exception {
+    int i = nextIndex();
+    tableGenerator.reset(rows[i]);
+    plans.get(records[i].getSchema()).traverse(records[i], tableGenerator);
+    return tableGenerator.get();
+  }
+
+  @Benchmark
+  public KeyValue<byte[], io.cdap.cdap.api.dataset.table.Put> keyedObserverTable() throws Exception {
+    int i = nextIndex();
+    // The row key is encoded once for the put and once more for the emitted key.
+    TablePutGenerator generator = new TablePutGenerator(Bytes.toBytes(keys[i]));
+    new StructuredRecordObserver(generator).traverse(records[i]);
+    return new KeyValue<>(Bytes.toBytes(keys[i]), generator.get());
+  }
+
+  @Benchmark
+  public KeyValue<byte[], io.cdap.cdap.api.dataset.table.Put> keyedReusedTable() throws Exception {
+    int i = nextIndex();
+    byte[] row = Bytes.toBytes(keys[i]);
+    tableGenerator.reset(row);
+    plans.get(records[i].getSchema()).traverse(records[i], tableGenerator);
+    return new KeyValue<>(row, tableGenerator.get());
+  }
+
+  private int nextIndex() {
+    int i = next;
+    next = (next + 1) % RECORDS;
+    return i;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link TableOutputFormat} writing through a tunable {@link BufferedMutator}.
+ *
+ * Mutations are buffered on the client up to a configured number of bytes, the number of batches in flight
+ * towards the region servers is bounded and the buffer is optionally flushed on a fixed interval, so that
+ * slow trickles of records do not sit in the buffer. Flush activity is reported through task counters.
+ */
+public class BufferedTableOutputFormat extends TableOutputFormat<NullWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(BufferedTableOutputFormat.class);
+
+  /**
+   * Size in bytes of the client side write buffer.
+   */
+  public static final String WRITE_BUFFER_SIZE = "dynhbase.write.buffer.size";
+
+  /**
+   * Maximum number of concurrent batches sent to the region servers.
+   */
+  public static final String MAX_IN_FLIGHT = "dynhbase.write.max.inflight";
+
+  /**
+   * Interval in milliseconds at which the write buffer is flushed, 0 to flush only when full.
+   */
+  public static final String FLUSH_INTERVAL = "dynhbase.write.flush.interval.ms";
+
+  /**
+   * Counter group for the writer metrics.
+   */
+  public static final String COUNTER_GROUP = "DynHBase Writer";
+
+  @Override
+  public RecordWriter<NullWritable, Mutation> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = new Configuration(getConf());
+    int maxInFlight = conf.getInt(MAX_IN_FLIGHT, 0);
+    if (maxInFlight > 0) {
+      conf.setInt(HConstants.HBASE_CLIENT_MAX_TOTAL_TASKS, maxInFlight);
+    }
+
+    BufferedMutatorParams params = new BufferedMutatorParams(TableName.valueOf(conf.get(OUTPUT_TABLE)));
+    long bufferSize = conf.getLong(WRITE_BUFFER_SIZE, 0L);
+    if (bufferSize > 0) {
+      params.writeBufferSize(bufferSize);
+    }
+    return new BufferedRecordWriter(conf, params, conf.getLong(FLUSH_INTERVAL, 0L), context);
+  }
+
+  /**
+   * Writes mutations through a {@link BufferedMutator}, flushing it periodically when configured.
+   */
+  private static final class BufferedRecordWriter extends RecordWriter<NullWritable, Mutation> {
+    private final Connection connection;
+    private final BufferedMutator mutator;
+    private final ScheduledExecutorService flusher;
+    private final AtomicReference<IOException> flushFailure = new AtomicReference<>();
+    // Flushes happen on the flusher thread too, counters are only updated from the task thread.
+    private final AtomicLong pendingFlushes = new AtomicLong();
+    private final AtomicLong pendingFlushNanos = new AtomicLong();
+    // Single mutations take microseconds, their time is published once it adds up to whole milliseconds.
+    private long pendingWriteNanos;
+    private final Counter mutations;
+    private final Counter flushes;
+    private final Counter flushMillis;
+    private final Counter writeMillis;
+
+    BufferedRecordWriter(Configuration conf, BufferedMutatorParams params, long flushInterval,
+                         TaskAttemptContext context) throws IOException {
+      this.connection = ConnectionFactory.createConnection(conf);
+      this.mutator = connection.getBufferedMutator(params);
+      this.mutations = context.getCounter(COUNTER_GROUP, "Mutations");
+      this.flushes = context.getCounter(COUNTER_GROUP, "Flushes");
+      this.flushMillis = context.getCounter(COUNTER_GROUP, "Flush time (ms)");
+      this.writeMillis = context.getCounter(COUNTER_GROUP, "Write time (ms)");
+
+      if (flushInterval > 0) {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread thread = new Thread(r, "dynhbase-flusher");
+          thread.setDaemon(true);
+          return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::periodicFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+      } else {
+        flusher = null;
+      }
+    }
+
+    @Override
+    public void write(NullWritable key, Mutation value) throws IOException {
+      checkFlushFailure();
+      long start = System.nanoTime();
+      // Includes the time spent flushing when the buffer fills up.
+      mutator.mutate(value);
+      pendingWriteNanos += System.nanoTime() - start;
+      mutations.increment(1);
+      publishWriteMetrics();
+      publishFlushMetrics();
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      try {
+        if (flusher != null) {
+          flusher.shutdown();
+        }
+        flush();
+        publishFlushMetrics();
+        publishWriteMetrics();
+        checkFlushFailure();
+      } finally {
+        try {
+          mutator.close();
+        } finally {
+          connection.close();
+        }
+      }
+    }
+
+    private void periodicFlush() {
+      try {
+        flush();
+      } catch (IOException e) {
+        LOG.warn("Periodic flush of HBase write buffer failed", e);
+        flushFailure.compareAndSet(null, e);
+      }
+    }
+
+    private void flush() throws IOException {
+      long start = System.nanoTime();
+      mutator.flush();
+      pendingFlushNanos.addAndGet(System.nanoTime() - start);
+      pendingFlushes.incrementAndGet();
+    }
+
+    private void publishWriteMetrics() {
+      long millis = TimeUnit.NANOSECONDS.toMillis(pendingWriteNanos);
+      if (millis > 0) {
+        writeMillis.increment(millis);
+        pendingWriteNanos -= TimeUnit.MILLISECONDS.toNanos(millis);
+      }
+    }
+
+    private void publishFlushMetrics() {
+      if (pendingFlushes.get() > 0) {
+        flushes.increment(pendingFlushes.getAndSet(0));
+        flushMillis.increment(TimeUnit.NANOSECONDS.toMillis(pendingFlushNanos.getAndSet(0)));
+      }
+    }
+
+    private void checkFlushFailure() throws IOException {
+      IOException failure = flushFailure.get();
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+}
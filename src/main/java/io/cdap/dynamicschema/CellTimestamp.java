@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.dynamicschema.api.Expression;
+import io.cdap.dynamicschema.api.ExpressionException;
+import io.cdap.dynamicschema.api.ExpressionResolver;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the timestamp of the cells written for a record, in epoch milliseconds.
+ *
+ * An expression made of a single field of type long is read directly, as epoch milliseconds or as the unit of its
+ * timestamp logical type. Any other expression, or field of type string, must evaluate to a number or a string of
+ * epoch milliseconds, or to an ISO-8601 instant. The unit of the field is looked up once per schema, so an instance
+ * must not be shared between threads.
+ */
+public final class CellTimestamp {
+  private final Expression expression;
+  @Nullable
+  private final String field;
+  @Nullable
+  private Schema schema;
+  private boolean micros;
+
+  private CellTimestamp(Expression expression) {
+    this.expression = expression;
+    this.field = ExpressionResolver.of(expression).getField();
+  }
+
+  public static CellTimestamp of(Expression expression) {
+    return new CellTimestamp(expression);
+  }
+
+  /**
+   * @param field schema of a field.
+   * @return true if the field can be read directly as a timestamp.
+   */
+  static boolean isTimestampField(Schema.Field field) {
+    Schema schema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+    return schema.getType() == Schema.Type.LONG || schema.getType() == Schema.Type.STRING;
+  }
+
+  /**
+   * @param record to resolve the timestamp of.
+   * @return timestamp of the cells of the record, in epoch milliseconds.
+   * @throws ExpressionException if the timestamp is null, negative or cannot be parsed.
+   */
+  public long resolve(StructuredRecord record) throws ExpressionException {
+    // Expressions are evaluated without converting their result to a string, as arithmetic yields numbers.
+    Object value = field == null ? expression.evaluate(record) : record.get(field);
+    long millis;
+    if (value instanceof Long && field != null) {
+      if (record.getSchema() != schema) {
+        schema = record.getSchema();
+        Schema.Field timestampField = schema.getField(field);
+        Schema fieldSchema = timestampField.getSchema().isNullable() ?
+          timestampField.getSchema().getNonNullable() : timestampField.getSchema();
+        micros = fieldSchema.getLogicalType() == Schema.LogicalType.TIMESTAMP_MICROS;
+      }
+      millis = micros ? TimeUnit.MICROSECONDS.toMillis((Long) value) : (Long) value;
+    } else if (value instanceof Number) {
+      millis = ((Number) value).longValue();
+    } else if (value instanceof String) {
+      try {
+        millis = TypedValueEncoder.parseTimestamp((String) value);
+      } catch (IllegalArgumentException e) {
+        throw new ExpressionException("Invalid cell timestamp: " + e.getMessage());
+      }
+    } else if (value == null) {
+      throw new ExpressionException("Cell timestamp is null");
+    } else {
+      throw new ExpressionException(String.format("Cell timestamp '%s' is not a number or a string", value));
+    }
+    if (millis < 0) {
+      throw new ExpressionException(String.format("Cell timestamp %d is negative", millis));
+    }
+    return millis;
+  }
+}
@@ -19,7 +19,6 @@ package io.cdap.dynamicschema;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
-import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.batch.Output;
 import io.cdap.cdap.api.data.batch.OutputFormatProvider;
 import io.cdap.cdap.api.data.format.StructuredRecord;
@@ -31,30 +30,34 @@ import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
-import io.cdap.dynamicschema.api.Expression;
-import io.cdap.dynamicschema.observer.StructuredRecordObserver;
+import io.cdap.dynamicschema.api.ExpressionException;
+import io.cdap.dynamicschema.api.ExpressionResolver;
 import io.cdap.plugin.common.ReferenceBatchSink;
 import io.cdap.plugin.common.batch.JobUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
-import org.apache.hadoop.hbase.HConstants;
-import org.apache.hadoop.hbase.MasterNotRunningException;
-import org.apache.hadoop.hbase.ZooKeeperConnectionException;
-import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.mapreduce.KeyValueSerialization;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.mapreduce.MutationSerialization;
 import org.apache.hadoop.hbase.mapreduce.ResultSerialization;
 import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Dynamic Schema support for writing to HBase.
@@ -71,14 +74,9 @@ public class DynamicSchemaHBaseSink extends ReferenceBatchSink<StructuredRecord,
   private HBaseSinkConfig config;
 
   /**
-   * Expression evaluator for generating row key.
+   * Converts the records of this task into puts.
    */
-  private Expression rowKeyExpression;
-
-  /**
-   * Expression evaluator for generating column family.
-   */
-  private Expression familyExpression;
+  private HBaseRecordConverter converter;
 
   public DynamicSchemaHBaseSink(HBaseSinkConfig config) {
     super(config);
@@ -116,84 +114,111 @@ public class DynamicSchemaHBaseSink extends ReferenceBatchSink<StructuredRecord,
     Configuration conf = job.getConfiguration();
     HBaseConfiguration.addHbaseResources(conf);
 
-    context.addOutput(Output.of(config.referenceName, new HBaseOutputFormatProvider(config, conf)));
+    HBaseSinkSettings settings = createSettings();
+    if (settings.isCreateTable()) {
+      HBaseTables.createIfMissing(settings);
+    }
+    String bulkLoadDir = settings.getOutputMode() == HBaseSinkConfig.OutputMode.BULK_LOAD
+      ? getBulkLoadPath(settings, context).toString() : null;
+    context.addOutput(Output.of(config.referenceName, new HBaseOutputFormatProvider(settings, conf, bulkLoadDir)));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSinkContext context) {
+    super.onRunFinish(succeeded, context);
+    if (config.getOutputMode() != HBaseSinkConfig.OutputMode.BULK_LOAD) {
+      return;
+    }
+
+    Path path = null;
+    try {
+      HBaseSinkSettings settings = createSettings();
+      path = getBulkLoadPath(settings, context);
+      Configuration conf = settings.createConfiguration();
+      if (succeeded) {
+        // Each region loads its files atomically, files of a failed load stay in place for a retry.
+        HFileBulkLoadOutputFormat.configureLoad(conf, path);
+        TableName tableName = TableName.valueOf(settings.getTable());
+        try (HBaseConnections.Lease lease = HBaseConnections.acquire(conf);
+             Admin admin = lease.getConnection().getAdmin();
+             Table table = lease.getConnection().getTable(tableName);
+             RegionLocator locator = lease.getConnection().getRegionLocator(tableName)) {
+          new LoadIncrementalHFiles(conf).doBulkLoad(path, admin, table, locator);
+        }
+        LOG.info("Bulk loaded HFiles from '{}' into HBase table '{}'", path, settings.getTable());
+      }
+      FileSystem fs = path.getFileSystem(conf);
+      if (fs.exists(path)) {
+        fs.delete(path, true);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(
+        String.format("Failed to bulk load HFiles from '%s' into HBase table '%s'", path, config.getTable()), e);
+    }
   }
 
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
     super.initialize(context);
+    converter = HBaseRecordConverter.of(config, context.getMetrics());
+  }
 
-    // Row key resolver setup, we know by now that the expression is valid.
-    rowKeyExpression = config.getRowKeyExpression();
-
-    // Column family resolver setup, we know by now that is also valid.
-    familyExpression = config.getFamilyExpression();
+  @Override
+  public void destroy() {
+    if (converter != null) {
+      converter.flushMetrics();
+      QualifierCache qualifiers = converter.getQualifiers();
+      LOG.debug("Qualifier cache: {} hits, {} misses", qualifiers.getHits(), qualifiers.getMisses());
+    }
+    super.destroy();
   }
 
   @Override
   public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, Mutation>> emitter) throws Exception {
-    String row = rowKeyExpression.apply(input);
-    String family = familyExpression.apply(input);
+    if (converter.getSettings().getMutationType() == HBaseSinkConfig.MutationType.INCREMENT) {
+      // Increments are added up by the output format before being written.
+      converter.increment(input, increment ->
+        emitter.emit(new KeyValue<NullWritable, Mutation>(NullWritable.get(), increment)));
+    } else {
+      converter.convert(input, put -> emitter.emit(new KeyValue<NullWritable, Mutation>(NullWritable.get(), put)));
+    }
+  }
 
-    // Visit all the fields and perform necessary operations.
-    HBasePutGenerator dcs = new HBasePutGenerator(Bytes.toBytes(row),
-                                                  Bytes.toBytes(family), config.getDurability());
-    StructuredRecordObserver sro = new StructuredRecordObserver(dcs);
-    sro.traverse(input);
+  /**
+   * @return directory the HFiles of this run are staged in, unique to the run.
+   */
+  private static Path getBulkLoadPath(HBaseSinkSettings settings, BatchSinkContext context) {
+    return new Path(settings.getBulkLoadDir(),
+                    String.format("%s-%d", settings.getTable().replace(':', '_'), context.getLogicalStartTime()));
+  }
 
-    // Emit the PUT to go to HBase.
-    emitter.emit(new KeyValue<NullWritable, Mutation>(NullWritable.get(), dcs.get()));
+  private HBaseSinkSettings createSettings() throws ExpressionException {
+    return HBaseSinkSettings.of(config, ExpressionResolver.of(config.getFamilyExpression()));
   }
 
   private void validateConfiguration(Schema inputSchema, FailureCollector failureCollector) {
     // Get the input schema and validate if there are fields that support dynamic schema.
     config.validate(failureCollector, inputSchema);
     failureCollector.getOrThrowException();
-    validateTable(failureCollector);
+    HBaseTables.validate(config, failureCollector);
     failureCollector.getOrThrowException();
   }
 
-  private void validateTable(FailureCollector failureCollector) {
-    if (config.containsMacro(HBaseSinkConfig.TABLE) || config.containsMacro(HBaseSinkConfig.QUORUM)
-      || config.containsMacro(HBaseSinkConfig.PORT)) {
-      return;
-    }
-    // Check if the table exists on HBase.
-    try {
-      Configuration conf = HBaseConfiguration.create();
-      conf.set(HConstants.ZOOKEEPER_QUORUM, config.getQorum());
-      conf.setInt(HConstants.ZOOKEEPER_CLIENT_PORT, config.getClientPort());
-      HBaseAdmin admin = new HBaseAdmin(conf);
-      if (!admin.tableExists(config.getTable())) {
-        failureCollector.addFailure(String.format("HBase table '%s' does not exist", config.getTable()), null)
-          .withConfigProperty(HBaseSinkConfig.TABLE);
-      }
-    } catch (MasterNotRunningException e) {
-      failureCollector.addFailure("HBase master is not running", "Check the status of HBase")
-        .withStacktrace(e.getStackTrace());
-    } catch (ZooKeeperConnectionException e) {
-      failureCollector.addFailure("Unable to connect to zookeeper: " + e.getMessage(),
-                                  "Check zookeeper quorum configuration")
-        .withStacktrace(e.getStackTrace());
-    } catch (IOException e) {
-      failureCollector.addFailure(String.format("Unable to connect to HBase table '%s'", config.getTable()), null)
-        .withStacktrace(e.getStackTrace());
-    }
-  }
-
   /**
    * Provider for HBase Table Output Format.
    */
   private class HBaseOutputFormatProvider implements OutputFormatProvider {
 
     private final Map<String, String> conf;
+    private final String outputFormatClassName;
 
-    public HBaseOutputFormatProvider(HBaseSinkConfig config, Configuration configuration) {
+    public HBaseOutputFormatProvider(HBaseSinkSettings settings, Configuration configuration,
+                                     @Nullable String bulkLoadDir) {
       this.conf = new HashMap<>();
 
-      conf.put(TableOutputFormat.OUTPUT_TABLE, config.getTable());
-      conf.put(TableOutputFormat.QUORUM_ADDRESS, config.getQuorum());
-      conf.put(TableOutputFormat.QUORUM_PORT, String.valueOf(config.getClientPort()));
+      conf.put(TableOutputFormat.OUTPUT_TABLE, settings.getTable());
+      conf.put(TableOutputFormat.QUORUM_ADDRESS, settings.getQuorum());
+      conf.put(TableOutputFormat.QUORUM_PORT, String.valueOf(settings.getClientPort()));
       String[] serializationClasses = {
         configuration.get("io.serializations"),
         MutationSerialization.class.getName(),
@@ -201,13 +226,44 @@ public class DynamicSchemaHBaseSink extends ReferenceBatchSink<StructuredRecord,
         KeyValueSerialization.class.getName()
       };
       conf.put("io.serializations", StringUtils.arrayToString(serializationClasses));
+
+      if (settings.getMutationType() == HBaseSinkConfig.MutationType.INCREMENT) {
+        // Neither the table output format nor buffered mutators accept increments.
+        outputFormatClassName = IncrementTableOutputFormat.class.getName();
+        conf.put(IncrementTableOutputFormat.AGGREGATION_SIZE, String.valueOf(settings.getAggregationSize()));
+        if (settings.getMaxInFlight() != null) {
+          conf.put(BufferedTableOutputFormat.MAX_IN_FLIGHT, String.valueOf(settings.getMaxInFlight()));
+        }
+        if (settings.getFlushInterval() != null) {
+          conf.put(BufferedTableOutputFormat.FLUSH_INTERVAL, String.valueOf(settings.getFlushInterval()));
+        }
+      } else if (settings.getOutputMode() == HBaseSinkConfig.OutputMode.BUFFERED) {
+        outputFormatClassName = BufferedTableOutputFormat.class.getName();
+        if (settings.getWriteBufferSize() != null) {
+          conf.put(BufferedTableOutputFormat.WRITE_BUFFER_SIZE, String.valueOf(settings.getWriteBufferSize()));
+        }
+        if (settings.getMaxInFlight() != null) {
+          conf.put(BufferedTableOutputFormat.MAX_IN_FLIGHT, String.valueOf(settings.getMaxInFlight()));
+        }
+        if (settings.getFlushInterval() != null) {
+          conf.put(BufferedTableOutputFormat.FLUSH_INTERVAL, String.valueOf(settings.getFlushInterval()));
+        }
+      } else if (settings.getOutputMode() == HBaseSinkConfig.OutputMode.BULK_LOAD) {
+        outputFormatClassName = HFileBulkLoadOutputFormat.class.getName();
+        conf.put(FileOutputFormat.OUTDIR, bulkLoadDir);
+        if (settings.getWriteBufferSize() != null) {
+          conf.put(HFileBulkLoadOutputFormat.BUFFER_SIZE, String.valueOf(settings.getWriteBufferSize()));
+        }
+      } else {
+        outputFormatClassName = TableOutputFormat.class.getName();
+      }
     }
 
     /**
      * @return the class table of the output format to use.
      */
     public String getOutputFormatClassName() {
-      return TableOutputFormat.class.getName();
+      return outputFormatClassName;
     }
 
     /**
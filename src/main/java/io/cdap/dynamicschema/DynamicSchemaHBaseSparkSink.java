@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.batch.SparkExecutionPluginContext;
+import io.cdap.cdap.etl.api.batch.SparkPluginContext;
+import io.cdap.cdap.etl.api.batch.SparkSink;
+import io.cdap.plugin.common.IdUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.function.VoidFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import javax.annotation.Nullable;
+
+/**
+ * Dynamic Schema support for writing to HBase from Spark, in batch and realtime pipelines.
+ *
+ * Every partition of a batch, or of a micro-batch in a realtime pipeline, is converted with the same write path
+ * as the DynHBase batch sink and written directly through a {@link BufferedMutator}, without a Hadoop output
+ * format. Executors share one connection per cluster across partitions and micro-batches.
+ */
+@Plugin(type = SparkSink.PLUGIN_TYPE)
+@Name("DynHBase")
+@Description("Dynamic Schema support for HBase writes from Spark batch and realtime pipelines.")
+public class DynamicSchemaHBaseSparkSink extends SparkSink<StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(DynamicSchemaHBaseSparkSink.class);
+
+  /**
+   * HBase Plugin configuration to read configuration from JSON.
+   */
+  private final HBaseSinkConfig config;
+
+  public DynamicSchemaHBaseSparkSink(HBaseSinkConfig config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer configurer) {
+    super.configurePipeline(configurer);
+    IdUtils.validateId(config.referenceName);
+    Schema inputSchema = configurer.getStageConfigurer().getInputSchema();
+    FailureCollector failureCollector = configurer.getStageConfigurer().getFailureCollector();
+    validateConfiguration(inputSchema, failureCollector);
+  }
+
+  @Override
+  public void prepareRun(SparkPluginContext context) throws Exception {
+    validateConfiguration(context.getInputSchema(), context.getFailureCollector());
+    if (config.isCreateTable()) {
+      HBaseTables.createIfMissing(HBaseRecordConverter.of(config, null).getSettings());
+    }
+  }
+
+  @Override
+  public void run(SparkExecutionPluginContext context, JavaRDD<StructuredRecord> input) throws Exception {
+    Metrics metrics = context.getMetrics();
+    if (!(metrics instanceof Serializable)) {
+      LOG.warn("Stage metrics of type {} cannot be shipped to executors, the sink metrics are not published",
+               metrics.getClass().getName());
+      metrics = null;
+    }
+    input.foreachPartition(new PartitionWriter(config, metrics));
+  }
+
+  private void validateConfiguration(Schema inputSchema, FailureCollector failureCollector) {
+    // Get the input schema and validate if there are fields that support dynamic schema.
+    config.validate(failureCollector, inputSchema);
+    if (!config.containsMacro(HBaseSinkConfig.OUTPUT_MODE)
+      && config.getOutputMode() == HBaseSinkConfig.OutputMode.BULK_LOAD) {
+      failureCollector.addFailure("Bulk load is not supported when writing from Spark",
+                                  "Select output mode 'Direct' or 'Buffered'")
+        .withConfigProperty(HBaseSinkConfig.OUTPUT_MODE);
+    }
+    failureCollector.getOrThrowException();
+    HBaseTables.validate(config, failureCollector);
+    failureCollector.getOrThrowException();
+  }
+
+  /**
+   * Writes the records of a partition through a buffered mutator of the connection shared by the executor, or
+   * through its table in 'Increment' mode.
+   */
+  static final class PartitionWriter implements VoidFunction<Iterator<StructuredRecord>> {
+    private final HBaseSinkConfig config;
+    @Nullable
+    private final Metrics metrics;
+
+    PartitionWriter(HBaseSinkConfig config, @Nullable Metrics metrics) {
+      this.config = config;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public void call(Iterator<StructuredRecord> records) throws Exception {
+      if (!records.hasNext()) {
+        return;
+      }
+      HBaseRecordConverter converter = HBaseRecordConverter.of(config, metrics);
+      HBaseSinkSettings settings = converter.getSettings();
+      Configuration conf = settings.createConfiguration();
+      if (settings.getMaxInFlight() != null) {
+        conf.setInt(HConstants.HBASE_CLIENT_MAX_TOTAL_TASKS, settings.getMaxInFlight());
+      }
+      if (settings.getMutationType() == HBaseSinkConfig.MutationType.INCREMENT) {
+        increment(records, converter, conf);
+        return;
+      }
+      BufferedMutatorParams params = new BufferedMutatorParams(TableName.valueOf(settings.getTable()));
+      if (settings.getWriteBufferSize() != null) {
+        params.writeBufferSize(settings.getWriteBufferSize());
+      }
+
+      // Closing the mutator flushes the partition, the connection stays open for the next partitions.
+      try (HBaseConnections.Lease lease = HBaseConnections.acquireForWrites(conf);
+           BufferedMutator mutator = lease.getConnection().getBufferedMutator(params)) {
+        write(records, converter, mutator);
+      } finally {
+        converter.flushMetrics();
+      }
+    }
+
+    private static void increment(Iterator<StructuredRecord> records, HBaseRecordConverter converter,
+                                  Configuration conf) throws Exception {
+      HBaseSinkSettings settings = converter.getSettings();
+      try (HBaseConnections.Lease lease = HBaseConnections.acquireForWrites(conf);
+           Table table = lease.getConnection().getTable(TableName.valueOf(settings.getTable()))) {
+        increment(records, converter, table);
+      } finally {
+        converter.flushMetrics();
+      }
+    }
+
+    /**
+     * Converts the records of the partition into mutations of the mutator.
+     */
+    static void write(Iterator<StructuredRecord> records, HBaseRecordConverter converter,
+                      BufferedMutator mutator) throws Exception {
+      while (records.hasNext()) {
+        converter.convert(records.next(), mutator::mutate);
+      }
+    }
+
+    /**
+     * Adds up the counters of the partition, written whenever the aggregation table fills up and at the end.
+     */
+    static void increment(Iterator<StructuredRecord> records, HBaseRecordConverter converter,
+                          Table table) throws Exception {
+      IncrementBuffer buffer = new IncrementBuffer(converter.getSettings().getAggregationSize());
+      while (records.hasNext()) {
+        converter.increment(records.next(), increment -> {
+          if (buffer.add(increment)) {
+            buffer.flush(table);
+          }
+        });
+      }
+      buffer.flush(table);
+    }
+  }
+}
@@ -34,11 +34,16 @@ import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
-import io.cdap.dynamicschema.api.Expression;
-import io.cdap.dynamicschema.observer.StructuredRecordObserver;
+import io.cdap.dynamicschema.api.CompositeRowKey;
+import io.cdap.dynamicschema.api.ExpressionResolver;
+import io.cdap.dynamicschema.observer.ParallelEncoding;
+import io.cdap.dynamicschema.observer.WritePlanCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import javax.annotation.Nullable;
+
 /**
  * Dynamic Schema support for writing to Table.
  */
@@ -56,7 +61,39 @@ public class DynamicSchemaTableSink extends BatchSink<StructuredRecord, byte[],
   /**
    * Expression evaluator for generating row key.
    */
-  private Expression rowKeyExpression;
+  private ExpressionResolver rowKeyResolver;
+
+  /**
+   * Binary row key built from the row key fields, null if the row key is an expression.
+   */
+  @Nullable
+  private CompositeRowKey compositeRowKey;
+
+  /**
+   * Write plans compiled for the schemas of the records seen by this task.
+   */
+  private WritePlanCache plans;
+
+  /**
+   * Encodings of the dynamic column names seen by this task.
+   */
+  private QualifierCache qualifiers;
+
+  /**
+   * Put generator reused for every record of this task.
+   */
+  private TablePutGenerator generator;
+
+  /**
+   * Parallel encoding of large map and array fields, null when disabled.
+   */
+  @Nullable
+  private ParallelEncoding parallel;
+
+  /**
+   * Metrics of the records written by this task.
+   */
+  private SinkMetrics metrics;
 
   public DynamicSchemaTableSink(TableSinkConfig config) {
     this.config = config;
@@ -85,19 +122,55 @@ public class DynamicSchemaTableSink extends BatchSink<StructuredRecord, byte[],
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
     super.initialize(context);
-    // Row key resolver setup, we know by now that the expression is valid.
-    rowKeyExpression = config.getRowKeyExpression();
+    // Row key resolver setup, we know by now that the expression or fields are valid.
+    compositeRowKey = config.getCompositeRowKey();
+    if (compositeRowKey == null) {
+      rowKeyResolver = ExpressionResolver.of(config.getRowKeyExpression());
+    }
+
+    plans = new WritePlanCache();
+    qualifiers = new QualifierCache();
+    generator = new TablePutGenerator(qualifiers);
+    Integer parallelThreshold = config.getParallelThreshold();
+    parallel = parallelThreshold == null ? null : new ParallelEncoding(parallelThreshold);
+    metrics = new SinkMetrics(context.getMetrics(), qualifiers);
+  }
+
+  @Override
+  public void destroy() {
+    if (metrics != null) {
+      metrics.flush();
+      LOG.debug("Qualifier cache: {} hits, {} misses", qualifiers.getHits(), qualifiers.getMisses());
+    }
+    super.destroy();
   }
 
   @Override
   public void transform(StructuredRecord input, Emitter<KeyValue<byte[], Put>> emitter) throws Exception {
-    String row = rowKeyExpression.apply(input);
+    long start = System.nanoTime();
+    byte[] row = compositeRowKey != null ?
+      compositeRowKey.build(input) : Bytes.toBytes(rowKeyResolver.resolve(input));
+    long keyed = System.nanoTime();
 
-    TablePutGenerator generator = new TablePutGenerator(Bytes.toBytes(row));
-    StructuredRecordObserver sro = new StructuredRecordObserver(generator);
-    sro.traverse(input);
+    generator.reset(row);
+    plans.get(input.getSchema()).traverse(input, generator, parallel);
+    Put put = generator.get();
+    long generated = System.nanoTime();
 
     // Visit all the fields and perform necessary operations.
-    emitter.emit(new KeyValue<>(Bytes.toBytes(row), generator.get()));
+    emitter.emit(new KeyValue<>(row, put));
+    metrics.record(start, keyed, generated, System.nanoTime(), put.getValues().size(),
+                   generator.getDynamicColumns(), serializedSize(put));
+  }
+
+  /**
+   * @return number of bytes of the row key, qualifiers and values of the put.
+   */
+  private static long serializedSize(Put put) {
+    long size = put.getRow().length;
+    for (Map.Entry<byte[], byte[]> entry : put.getValues().entrySet()) {
+      size += entry.getKey().length + (entry.getValue() == null ? 0 : entry.getValue().length);
+    }
+    return size;
   }
 }
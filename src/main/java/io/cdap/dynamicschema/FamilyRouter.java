@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.Nullable;
+
+/**
+ * Routes the dynamic columns of a record to column families by rules on their name or type.
+ *
+ * Rules are a semicolon separated list of {@code <kind>:<pattern>=<family>}, applied in order, the first rule matching
+ * a column gives its family. Kinds are {@code prefix} matching the start of the column name, {@code regex} matching
+ * the whole column name and {@code type} matching the declared type of the value, 'string' for map entries and
+ * array records without a type. Columns matching no rule go to the family of the record.
+ *
+ * Rules are compiled once: the first type rule of every type is resolved up front and the first name rule of every
+ * column name is kept in a least recently used map, as names repeat from record to record. Routing a column is then
+ * two lookups. Not thread safe.
+ */
+public final class FamilyRouter {
+  private static final int DEFAULT_MAX_NAMES = 4096;
+
+  /**
+   * Kinds of rules.
+   */
+  private enum Kind {
+    PREFIX, REGEX, TYPE
+  }
+
+  private final List<Rule> rules;
+  private final byte[][] families;
+  private final Map<String, Integer> typeRules;
+  private final Map<String, Integer> nameRules;
+  private final boolean matchesNames;
+
+  private FamilyRouter(List<Rule> rules, final int maxNames) {
+    this.rules = rules;
+    // One more family, null, for the columns matching no rule.
+    this.families = new byte[rules.size() + 1][];
+    Map<String, byte[]> encoded = new HashMap<>();
+    this.typeRules = new HashMap<>();
+    boolean matchesNames = false;
+    for (int i = 0; i < rules.size(); ++i) {
+      Rule rule = rules.get(i);
+      families[i] = encoded.computeIfAbsent(rule.family, Bytes::toBytes);
+      if (rule.kind == Kind.TYPE) {
+        typeRules.putIfAbsent(rule.pattern, i);
+      } else {
+        matchesNames = true;
+      }
+    }
+    this.matchesNames = matchesNames;
+    this.nameRules = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+        return size() > maxNames;
+      }
+    };
+  }
+
+  /**
+   * Parses routing rules.
+   *
+   * @param rules semicolon separated list of {@code <kind>:<pattern>=<family>}, patterns may contain commas.
+   * @return router applying the rules, null if there are no rules.
+   * @throws IllegalArgumentException if a rule is malformed.
+   */
+  @Nullable
+  public static FamilyRouter parse(@Nullable String rules) {
+    return parse(rules, DEFAULT_MAX_NAMES);
+  }
+
+  @Nullable
+  static FamilyRouter parse(@Nullable String rules, int maxNames) {
+    if (rules == null || rules.trim().isEmpty()) {
+      return null;
+    }
+    List<Rule> parsed = new ArrayList<>();
+    for (String rule : rules.split(";")) {
+      rule = rule.trim();
+      if (!rule.isEmpty()) {
+        parsed.add(Rule.parse(rule));
+      }
+    }
+    return parsed.isEmpty() ? null : new FamilyRouter(parsed, maxNames);
+  }
+
+  /**
+   * @param qualifier name of the dynamic column.
+   * @param type declared type of the value, null if none was declared.
+   * @return encoded family the column is routed to, null for the family of the record. Must not be modified.
+   */
+  @Nullable
+  public byte[] route(String qualifier, @Nullable String type) {
+    int index = rules.size();
+    if (!typeRules.isEmpty()) {
+      Integer typeRule = typeRules.get(TypedValueEncoder.canonicalType(type));
+      if (typeRule != null) {
+        index = typeRule;
+      }
+    }
+    if (matchesNames && qualifier != null) {
+      Integer nameRule = nameRules.get(qualifier);
+      if (nameRule == null) {
+        nameRule = matchName(qualifier);
+        nameRules.put(qualifier, nameRule);
+      }
+      index = Math.min(index, nameRule);
+    }
+    return families[index];
+  }
+
+  /**
+   * @return index of the first name rule matching the qualifier, the number of rules if none does.
+   */
+  private int matchName(String qualifier) {
+    for (int i = 0; i < rules.size(); ++i) {
+      if (rules.get(i).matches(qualifier)) {
+        return i;
+      }
+    }
+    return rules.size();
+  }
+
+  /**
+   * @return distinct families columns are routed to, in rule order.
+   */
+  public Set<String> getFamilies() {
+    Set<String> families = new LinkedHashSet<>();
+    for (Rule rule : rules) {
+      families.add(rule.family);
+    }
+    return families;
+  }
+
+  /**
+   * Routing rule of a kind, a pattern and a family.
+   */
+  private static final class Rule {
+    private final Kind kind;
+    private final String pattern;
+    private final String family;
+    @Nullable
+    private final Pattern regex;
+
+    private Rule(Kind kind, String pattern, String family) {
+      this.kind = kind;
+      this.pattern = pattern;
+      this.family = family;
+      this.regex = kind == Kind.REGEX ? Pattern.compile(pattern) : null;
+    }
+
+    static Rule parse(String rule) {
+      int colon = rule.indexOf(':');
+      int equals = rule.lastIndexOf('=');
+      if (colon < 0 || equals < colon) {
+        throw new IllegalArgumentException(
+          String.format("Family rule '%s' is not of the form '<kind>:<pattern>=<family>'", rule));
+      }
+      String kindName = rule.substring(0, colon).trim();
+      String pattern = rule.substring(colon + 1, equals);
+      String family = rule.substring(equals + 1).trim();
+      Kind kind;
+      try {
+        kind = Kind.valueOf(kindName.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+          String.format("Family rule '%s' has kind '%s', expected 'prefix', 'regex' or 'type'", rule, kindName));
+      }
+      if (family.isEmpty()) {
+        throw new IllegalArgumentException(String.format("Family rule '%s' has no family", rule));
+      }
+      if (kind == Kind.TYPE) {
+        String type = TypedValueEncoder.canonicalType(pattern);
+        if (type == null) {
+          throw new IllegalArgumentException(
+            String.format("Family rule '%s' has type '%s' that is not supported", rule, pattern.trim()));
+        }
+        pattern = type;
+      } else if (pattern.isEmpty()) {
+        throw new IllegalArgumentException(String.format("Family rule '%s' has no pattern", rule));
+      }
+      try {
+        return new Rule(kind, pattern, family);
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException(
+          String.format("Family rule '%s' has an invalid regular expression: %s", rule, e.getDescription()));
+      }
+    }
+
+    boolean matches(String qualifier) {
+      switch (kind) {
+        case PREFIX:
+          return qualifier.startsWith(pattern);
+        case REGEX:
+          return regex.matcher(qualifier).matches();
+        default:
+          return false;
+      }
+    }
+  }
+}
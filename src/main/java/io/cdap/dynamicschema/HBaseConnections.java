@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.security.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HBase connections shared by the sinks for table validation, metadata lookups and writes.
+ *
+ * Connections are keyed by user, ZooKeeper quorum, client port and parent node and reference counted, so that
+ * pipelines running as different users in the same JVM never share an authenticated connection. A connection
+ * that is no longer leased is closed once it stays idle for {@link #IDLE_TIMEOUT_MS}, so that the validation of
+ * {@code configurePipeline} and {@code prepareRun} and the lookups that follow share a single ZooKeeper session,
+ * as do the partitions and micro-batches written by an executor. Connections for validation and lookups are
+ * created with bounded ZooKeeper and client retries, an unreachable cluster fails in seconds rather than
+ * blocking deployment for minutes. Connections for writes keep the retries of the configuration.
+ */
+public final class HBaseConnections {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseConnections.class);
+
+  /**
+   * Time an unused connection is kept open, in milliseconds.
+   */
+  static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+  static final int ZK_SESSION_TIMEOUT_MS = 30000;
+  static final int ZK_RECOVERY_RETRIES = 1;
+  static final int CLIENT_RETRIES = 3;
+
+  private static final Map<String, Shared> CONNECTIONS = new HashMap<>();
+  private static final ScheduledThreadPoolExecutor CLOSER = createCloser();
+
+  private HBaseConnections() {
+  }
+
+  /**
+   * Leases the connection to the cluster of the configuration, creating it if needed.
+   *
+   * @param conf configuration of the cluster.
+   * @return lease of the connection, to be closed once done with it.
+   * @throws IOException if the connection cannot be created.
+   */
+  public static Lease acquire(Configuration conf) throws IOException {
+    User user = User.getCurrent();
+    return acquire("admin@" + getKey(conf, user), bound(conf), user);
+  }
+
+  /**
+   * Leases the connection writing to the cluster of the configuration, creating it if needed.
+   *
+   * @param conf configuration of the cluster and of the client.
+   * @return lease of the connection, to be closed once done with it.
+   * @throws IOException if the connection cannot be created.
+   */
+  public static Lease acquireForWrites(Configuration conf) throws IOException {
+    // The number of batches in flight is a setting of the connection.
+    User user = User.getCurrent();
+    return acquire("write@" + getKey(conf, user) + "#" + conf.get(HConstants.HBASE_CLIENT_MAX_TOTAL_TASKS), conf,
+                   user);
+  }
+
+  private static Lease acquire(String key, Configuration conf, User user) throws IOException {
+    synchronized (CONNECTIONS) {
+      Shared shared = CONNECTIONS.get(key);
+      if (shared == null || shared.connection.isClosed()) {
+        shared = new Shared(key, ConnectionFactory.createConnection(conf, user));
+        CONNECTIONS.put(key, shared);
+      }
+      shared.references++;
+      return new Lease(shared);
+    }
+  }
+
+  /**
+   * @return key of the cluster of the configuration, as seen by the user.
+   */
+  static String getKey(Configuration conf, User user) {
+    return user.getName() + "@" + conf.get(HConstants.ZOOKEEPER_QUORUM) + ":"
+      + conf.get(HConstants.ZOOKEEPER_CLIENT_PORT) + ":"
+      + conf.get(HConstants.ZOOKEEPER_ZNODE_PARENT, HConstants.DEFAULT_ZOOKEEPER_ZNODE_PARENT);
+  }
+
+  /**
+   * @return copy of the configuration with bounded ZooKeeper session and retries.
+   */
+  static Configuration bound(Configuration conf) {
+    Configuration bounded = new Configuration(conf);
+    bounded.setInt(HConstants.ZK_SESSION_TIMEOUT,
+                   Math.min(conf.getInt(HConstants.ZK_SESSION_TIMEOUT, ZK_SESSION_TIMEOUT_MS), ZK_SESSION_TIMEOUT_MS));
+    bounded.setInt("zookeeper.recovery.retry", ZK_RECOVERY_RETRIES);
+    bounded.setInt(HConstants.HBASE_CLIENT_RETRIES_NUMBER, CLIENT_RETRIES);
+    return bounded;
+  }
+
+  /**
+   * @return number of connections currently open.
+   */
+  static int size() {
+    synchronized (CONNECTIONS) {
+      return CONNECTIONS.size();
+    }
+  }
+
+  private static void release(Shared shared) {
+    synchronized (CONNECTIONS) {
+      if (--shared.references > 0) {
+        return;
+      }
+      shared.idleSince = System.nanoTime();
+    }
+    CLOSER.schedule(() -> closeIfIdle(shared), IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private static void closeIfIdle(Shared shared) {
+    synchronized (CONNECTIONS) {
+      // Leased again since, or released again later and closed by a later task.
+      if (shared.references > 0
+        || System.nanoTime() - shared.idleSince < TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MS)) {
+        return;
+      }
+      if (CONNECTIONS.get(shared.key) == shared) {
+        CONNECTIONS.remove(shared.key);
+      }
+    }
+    try {
+      shared.connection.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to close HBase connection to '{}'", shared.key, e);
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor createCloser() {
+    ScheduledThreadPoolExecutor closer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "hbase-connection-closer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // No thread lingers once every connection is closed.
+    closer.setKeepAliveTime(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    closer.allowCoreThreadTimeOut(true);
+    closer.setRemoveOnCancelPolicy(true);
+    return closer;
+  }
+
+  /**
+   * Connection to a cluster with the number of its leases.
+   */
+  private static final class Shared {
+    private final String key;
+    private final Connection connection;
+    private int references;
+    private long idleSince;
+
+    Shared(String key, Connection connection) {
+      this.key = key;
+      this.connection = connection;
+    }
+  }
+
+  /**
+   * Lease of a shared connection, closing it releases the connection without closing it.
+   */
+  public static final class Lease implements Closeable {
+    private final Shared shared;
+    private boolean released;
+
+    private Lease(Shared shared) {
+      this.shared = shared;
+    }
+
+    /**
+     * @return connection to the cluster, must not be closed.
+     */
+    public Connection getConnection() {
+      return shared.connection;
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        release(shared);
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.dynamicschema.api.ColumnVisitor;
+import io.cdap.dynamicschema.api.Getable;
+import io.cdap.dynamicschema.api.GetableException;
+import io.cdap.dynamicschema.api.VisitorException;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import javax.annotation.Nullable;
+
+/**
+ * HBase Increment Generator visiting the columns resolved by a write plan.
+ *
+ * Every dynamic column is a counter, whose value is added to the stored value of the column. Values of map entries
+ * and array records without a type, or with type 'string', 'long', 'int' or 'short', must be integers. Columns
+ * derived from the fields of the record schema are not written, those fields only make the row key and family.
+ */
+public class HBaseIncrementGenerator implements ColumnVisitor, Getable<Increment> {
+  private final Durability durability;
+  @Nullable
+  private final QualifierCache qualifiers;
+  @Nullable
+  private final FamilyRouter router;
+
+  private byte[] family;
+  private Increment increment;
+  private int dynamicColumns;
+
+  /**
+   * Creates a generator to be reused across records, {@link #reset(byte[], byte[])} must be called before every
+   * record.
+   */
+  public HBaseIncrementGenerator(Durability durability, @Nullable QualifierCache qualifiers,
+                                 @Nullable FamilyRouter router) {
+    this.durability = durability;
+    this.qualifiers = qualifiers;
+    this.router = router;
+  }
+
+  /**
+   * Starts generating a new increment.
+   *
+   * @param rowkey of the increment.
+   * @param family of the counters of the increment.
+   */
+  public void reset(byte[] rowkey, byte[] family) {
+    this.family = family;
+    this.dynamicColumns = 0;
+    this.increment = new Increment(rowkey);
+    this.increment.setDurability(durability);
+  }
+
+  public boolean visit(byte[] qualifier, @Nullable byte[] value) throws VisitorException {
+    return true;
+  }
+
+  public boolean visit(String qualifier, String value, @Nullable String type) throws VisitorException {
+    if (value != null) {
+      add(qualifier, type, parse(qualifier, value.trim(), type));
+    }
+    return true;
+  }
+
+  public boolean visitDynamic(String name, byte[] qualifier, @Nullable byte[] value, @Nullable String type)
+    throws VisitorException {
+    if (value == null) {
+      return true;
+    }
+    String canonical = TypedValueEncoder.canonicalType(type);
+    long amount;
+    if ("long".equals(canonical)) {
+      amount = Bytes.toLong(value);
+    } else if ("int".equals(canonical)) {
+      amount = Bytes.toInt(value);
+    } else if ("short".equals(canonical)) {
+      amount = Bytes.toShort(value);
+    } else {
+      amount = parse(name, Bytes.toString(value).trim(), type);
+    }
+    add(name, type, amount);
+    return true;
+  }
+
+  private long parse(String qualifier, String value, @Nullable String type) throws VisitorException {
+    String canonical = TypedValueEncoder.canonicalType(type);
+    if (!"string".equals(canonical) && !"long".equals(canonical) && !"int".equals(canonical)
+      && !"short".equals(canonical)) {
+      throw new VisitorException(
+        String.format("Dynamic column '%s' of type '%s' cannot be incremented", qualifier, type));
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new VisitorException(
+        String.format("Unable to increment dynamic column '%s' by '%s', not an integer", qualifier, value));
+    }
+  }
+
+  private void add(String name, @Nullable String type, long amount) {
+    dynamicColumns++;
+    byte[] routed = router == null ? null : router.route(name, type);
+    byte[] qualifier = qualifiers == null ? TypedValueEncoder.toBytes(name) : qualifiers.get(name);
+    increment.addColumn(routed == null ? family : routed, qualifier, amount);
+  }
+
+  /**
+   * @return number of counters of the increment.
+   */
+  public int getDynamicColumns() {
+    return dynamicColumns;
+  }
+
+  public Increment get() throws GetableException {
+    return increment;
+  }
+}
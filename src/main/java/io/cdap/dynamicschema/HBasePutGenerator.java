@@ -16,22 +16,28 @@
 
 package io.cdap.dynamicschema;
 
-import io.cdap.dynamicschema.api.StructuredRecordVisitor;
+import io.cdap.dynamicschema.api.ColumnVisitor;
+import io.cdap.dynamicschema.api.PrimitiveStructuredRecordVisitor;
 import io.cdap.dynamicschema.api.Getable;
 import io.cdap.dynamicschema.api.GetableException;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.dynamicschema.api.VisitorException;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * HBase PUT Generator visiting all parts of {@link StructuredRecord} record.
  */
-public class HBasePutGenerator implements StructuredRecordVisitor, Getable<Put> {
+public class HBasePutGenerator implements PrimitiveStructuredRecordVisitor, ColumnVisitor, Getable<Put> {
   /**
    * Defines the row key for HBase row.
    */
@@ -43,15 +49,89 @@ public class HBasePutGenerator implements StructuredRecordVisitor, Getable<Put>
   private byte[] family;
 
   /**
-   *
+   * Durability of the generated puts.
+   */
+  private final Durability durability;
+
+  /**
+   * Put being generated.
+   */
+  private Put put;
+
+  /**
+   * Encodings of dynamic column names shared across records, null to encode every name.
+   */
+  @Nullable
+  private final QualifierCache qualifiers;
+
+  /**
+   * Routing of dynamic columns to other column families, null to write every column into the family of the record.
    */
-  private final Put put;
+  @Nullable
+  private final FamilyRouter router;
+
+  /**
+   * Number of dynamic columns added to the put.
+   */
+  private int dynamicColumns;
 
   public HBasePutGenerator(byte[] rowkey, byte[] family, Durability durability) {
+    this(rowkey, family, durability, null);
+  }
+
+  public HBasePutGenerator(byte[] rowkey, byte[] family, Durability durability,
+                           @Nullable QualifierCache qualifiers) {
+    this(durability, qualifiers);
+    reset(rowkey, family, 0);
+  }
+
+  /**
+   * Creates a generator to be reused across records, {@link #reset(byte[], byte[], int)} must be called
+   * before every record.
+   */
+  public HBasePutGenerator(Durability durability, @Nullable QualifierCache qualifiers) {
+    this(durability, qualifiers, null);
+  }
+
+  /**
+   * Creates a generator to be reused across records, routing dynamic columns to column families.
+   */
+  public HBasePutGenerator(Durability durability, @Nullable QualifierCache qualifiers,
+                           @Nullable FamilyRouter router) {
+    this.durability = durability;
+    this.qualifiers = qualifiers;
+    this.router = router;
+  }
+
+  /**
+   * Starts generating a new put.
+   *
+   * @param rowkey of the put.
+   * @param family of the columns of the put.
+   * @param expectedCells number of cells the put is expected to hold, used to size it up front.
+   */
+  public void reset(byte[] rowkey, byte[] family, int expectedCells) {
+    reset(rowkey, family, expectedCells, HConstants.LATEST_TIMESTAMP);
+  }
+
+  /**
+   * Starts generating a new put whose cells have the given timestamp.
+   *
+   * @param rowkey of the put.
+   * @param family of the columns of the put.
+   * @param expectedCells number of cells the put is expected to hold, used to size it up front.
+   * @param timestamp of the cells in epoch milliseconds, {@link HConstants#LATEST_TIMESTAMP} for the time of the
+   *                  region server.
+   */
+  public void reset(byte[] rowkey, byte[] family, int expectedCells, long timestamp) {
     this.rowkey = rowkey;
     this.family = family;
-    this.put = new Put(this.rowkey);
+    this.dynamicColumns = 0;
+    this.put = new Put(rowkey, timestamp);
     this.put.setDurability(durability);
+    if (expectedCells > 0) {
+      put.getFamilyCellMap().put(family, new ArrayList<Cell>(expectedCells));
+    }
   }
 
   public boolean visit(int depth, String name, Schema.Field field, StructuredRecord value) throws VisitorException {
@@ -61,65 +141,130 @@ public class HBasePutGenerator implements StructuredRecordVisitor, Getable<Put>
       if (size  == 2) {
         String fld = value.get("field");
         String val = value.get("value");
-        put.addColumn(family, Bytes.toBytes(fld), Bytes.toBytes(val));
+        put.addColumn(family(fld, null), qualifier(fld), TypedValueEncoder.toBytes(val));
       } else {
         String fld = value.get("field");
         String val = value.get("value");
         String type = value.get("type");
-        put.addColumn(family, Bytes.toBytes(fld), Bytes.toBytes(val));
+        put.addColumn(family(fld, type), qualifier(fld), TypedValueEncoder.encode(type, val));
       }
     }
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, String value) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), Bytes.toBytes(value));
+    put.addColumn(family, TypedValueEncoder.toBytes(name), TypedValueEncoder.toBytes(value));
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Integer value) throws VisitorException {
-    put.add(family, Bytes.toBytes(name), Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitInt(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Float value) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitFloat(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Double value) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitDouble(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Boolean value) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitBoolean(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Long value) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), Bytes.toBytes(value));
+    return value == null ? visit(depth, name, field) : visitLong(depth, name, field, value);
+  }
+
+  public boolean visitInt(int depth, String name, Schema.Field field, int value) throws VisitorException {
+    put.addColumn(family, TypedValueEncoder.toBytes(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitFloat(int depth, String name, Schema.Field field, float value) throws VisitorException {
+    put.addColumn(family, TypedValueEncoder.toBytes(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitDouble(int depth, String name, Schema.Field field, double value) throws VisitorException {
+    put.addColumn(family, TypedValueEncoder.toBytes(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitBoolean(int depth, String name, Schema.Field field, boolean value) throws VisitorException {
+    put.addColumn(family, TypedValueEncoder.toBytes(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitLong(int depth, String name, Schema.Field field, long value) throws VisitorException {
+    put.addColumn(family, TypedValueEncoder.toBytes(name), Bytes.toBytes(value));
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Map<String, String> value) throws VisitorException {
     for (Map.Entry<String, String> entry : value.entrySet()) {
-      put.addColumn(family, Bytes.toBytes(entry.getKey()), Bytes.toBytes(entry.getValue()));
+      put.addColumn(family(entry.getKey(), null), qualifier(entry.getKey()),
+                    TypedValueEncoder.toBytes(entry.getValue()));
     }
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, byte[] value) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), value);
+    put.addColumn(family, TypedValueEncoder.toBytes(name), value);
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field) throws VisitorException {
-    put.addColumn(family, Bytes.toBytes(name), (byte[]) null);
+    put.addColumn(family, TypedValueEncoder.toBytes(name), (byte[]) null);
+    return true;
+  }
+
+  public boolean visit(byte[] qualifier, byte[] value) throws VisitorException {
+    put.addColumn(family, qualifier, value);
     return true;
   }
 
+  public boolean visit(String qualifier, String value, String type) throws VisitorException {
+    put.addColumn(family(qualifier, type), qualifier(qualifier), TypedValueEncoder.encode(type, value));
+    return true;
+  }
+
+  public boolean visitDynamic(String name, byte[] qualifier, byte[] value, String type) throws VisitorException {
+    dynamicColumns++;
+    put.addColumn(family(name, type), qualifier, value);
+    return true;
+  }
+
+  /**
+   * @return number of cells written for map entries and array records.
+   */
+  public int getDynamicColumns() {
+    return dynamicColumns;
+  }
+
+  /**
+   * @return family the dynamic column is routed to, the family of the record if none.
+   */
+  private byte[] family(String name, @Nullable String type) {
+    if (router == null) {
+      return family;
+    }
+    byte[] routed = router.route(name, type);
+    return routed == null ? family : routed;
+  }
+
+  private byte[] qualifier(String name) {
+    dynamicColumns++;
+    return qualifiers == null ? TypedValueEncoder.toBytes(name) : qualifiers.get(name);
+  }
+
   public Put get() throws GetableException {
+    // Drop the cell list sized up front if no cell was written into it.
+    List<Cell> cells = put.getFamilyCellMap().get(family);
+    if (cells != null && cells.isEmpty()) {
+      put.getFamilyCellMap().remove(family);
+    }
     return put;
   }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.dynamicschema.api.CompositeRowKey;
+import io.cdap.dynamicschema.api.EncodingCache;
+import io.cdap.dynamicschema.api.Expression;
+import io.cdap.dynamicschema.api.ExpressionException;
+import io.cdap.dynamicschema.api.ExpressionResolver;
+import io.cdap.dynamicschema.observer.ParallelEncoding;
+import io.cdap.dynamicschema.observer.WritePlan;
+import io.cdap.dynamicschema.observer.WritePlanCache;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Converts records into the HBase puts, or increments, written by the DynHBase sinks.
+ *
+ * Holds everything resolved once per task: the row key resolver, the column family cache, the settings, the
+ * write plans, the qualifier cache and a reused put generator routing dynamic columns to their families. An
+ * instance must not be shared between threads.
+ */
+public final class HBaseRecordConverter {
+  private final HBaseSinkSettings settings;
+  @Nullable
+  private final CompositeRowKey compositeRowKey;
+  @Nullable
+  private final ExpressionResolver rowKeyResolver;
+  @Nullable
+  private final EncodingCache families;
+  private final WritePlanCache plans = new WritePlanCache();
+  private final QualifierCache qualifiers = new QualifierCache();
+  private final HBasePutGenerator generator;
+  @Nullable
+  private final HBaseIncrementGenerator incrementGenerator;
+  @Nullable
+  private final ParallelEncoding parallel;
+  private final PutSplitter splitter;
+  @Nullable
+  private final CellTimestamp timestamp;
+  @Nullable
+  private final SinkMetrics metrics;
+
+  private HBaseRecordConverter(HBaseSinkConfig config, @Nullable Metrics metrics) throws ExpressionException {
+    // Row key resolver setup, we know by now that the expression or fields are valid.
+    this.compositeRowKey = config.getCompositeRowKey();
+    this.rowKeyResolver = compositeRowKey == null ? ExpressionResolver.of(config.getRowKeyExpression()) : null;
+
+    // Column family resolver setup, we know by now that is also valid.
+    ExpressionResolver familyResolver = ExpressionResolver.of(config.getFamilyExpression());
+    this.settings = HBaseSinkSettings.of(config, familyResolver);
+    // Dynamic families usually take a handful of values, encoded once per distinct value of their variables.
+    this.families = settings.getConstantFamily() == null ? EncodingCache.of(config.getFamilyExpression()) : null;
+
+    FamilyRouter router = FamilyRouter.parse(settings.getFamilyRules());
+    this.generator = new HBasePutGenerator(settings.getDurability(), qualifiers, router);
+    this.incrementGenerator = settings.getMutationType() == HBaseSinkConfig.MutationType.INCREMENT ?
+      new HBaseIncrementGenerator(settings.getDurability(), qualifiers, router) : null;
+    Integer parallelThreshold = settings.getParallelThreshold();
+    this.parallel = parallelThreshold == null ? null : new ParallelEncoding(parallelThreshold);
+    this.splitter = new PutSplitter(settings.getMaxCellsPerMutation(), settings.getMaxBytesPerMutation());
+    Expression timestampExpression = config.getTimestampExpression();
+    this.timestamp = timestampExpression == null ? null : CellTimestamp.of(timestampExpression);
+    this.metrics = metrics == null ? null : new SinkMetrics(metrics, qualifiers, families);
+  }
+
+  /**
+   * @param config of the sink, validated and with macros substituted.
+   * @param metrics to publish the metrics of the written records to, null to not publish any.
+   * @return converter of records into puts.
+   * @throws ExpressionException if the column family expression is a constant that fails to evaluate.
+   */
+  public static HBaseRecordConverter of(HBaseSinkConfig config, @Nullable Metrics metrics)
+    throws ExpressionException {
+    return new HBaseRecordConverter(config, metrics);
+  }
+
+  public HBaseSinkSettings getSettings() {
+    return settings;
+  }
+
+  /**
+   * Converts a record into a put, split into several puts if it exceeds the mutation limits.
+   *
+   * @param input record to be converted.
+   * @param writer receiving every put of the record, in order.
+   * @throws Exception if the key, family, timestamp or a column fails to evaluate, or the writer fails.
+   */
+  public void convert(StructuredRecord input, PutWriter writer) throws Exception {
+    long start = System.nanoTime();
+    byte[] rowkey = rowkey(input);
+    byte[] family = family(input);
+    long cellTimestamp = timestamp == null ? HConstants.LATEST_TIMESTAMP : timestamp.resolve(input);
+    long keyed = System.nanoTime();
+
+    // Visit all the fields and perform necessary operations.
+    WritePlan plan = plans.get(input.getSchema());
+    generator.reset(rowkey, family, plan.countColumns(input), cellTimestamp);
+    plan.traverse(input, generator, parallel);
+    Put put = generator.get();
+    if (settings.getTtlMillis() != null) {
+      put.setTTL(settings.getTtlMillis());
+    }
+    long generated = System.nanoTime();
+
+    // Hand the PUT over to be written to HBase, split into bounded mutations if too large.
+    long bytes = serializedSize(put);
+    if (splitter.isEnabled()) {
+      for (Put split : splitter.split(put, bytes)) {
+        writer.write(split);
+      }
+    } else {
+      writer.write(put);
+    }
+    if (metrics != null) {
+      metrics.record(start, keyed, generated, System.nanoTime(), put.size(), generator.getDynamicColumns(), bytes);
+    }
+  }
+
+  /**
+   * Converts a record into an increment of the counters carried by its dynamic columns, in 'Increment' mode.
+   *
+   * @param input record to be converted.
+   * @param writer receiving the increment of the record, unless the record has no counter.
+   * @throws Exception if the key, family or a counter fails to evaluate, or the writer fails.
+   */
+  public void increment(StructuredRecord input, IncrementWriter writer) throws Exception {
+    if (incrementGenerator == null) {
+      throw new IllegalStateException("Records are converted into increments only in 'Increment' mode");
+    }
+    long start = System.nanoTime();
+    byte[] rowkey = rowkey(input);
+    byte[] family = family(input);
+    long keyed = System.nanoTime();
+
+    incrementGenerator.reset(rowkey, family);
+    plans.get(input.getSchema()).traverse(input, incrementGenerator, parallel);
+    Increment increment = incrementGenerator.get();
+    if (increment.isEmpty()) {
+      return;
+    }
+    if (settings.getTtlMillis() != null) {
+      increment.setTTL(settings.getTtlMillis());
+    }
+    long generated = System.nanoTime();
+
+    // Increments are small, they are never split and are added up before being written.
+    long bytes = serializedSize(increment);
+    writer.write(increment);
+    if (metrics != null) {
+      metrics.record(start, keyed, generated, System.nanoTime(), increment.size(),
+                     incrementGenerator.getDynamicColumns(), bytes);
+    }
+  }
+
+  private byte[] rowkey(StructuredRecord input) throws ExpressionException {
+    byte[] row = compositeRowKey != null ?
+      compositeRowKey.build(input) : Bytes.toBytes(rowKeyResolver.resolve(input));
+    return settings.getRowKeyDistributor().distribute(row);
+  }
+
+  private byte[] family(StructuredRecord input) throws ExpressionException {
+    byte[] family = settings.getConstantFamily();
+    return family == null ? families.get(input) : family;
+  }
+
+  /**
+   * Publishes the metrics accumulated since the last flush.
+   */
+  public void flushMetrics() {
+    if (metrics != null) {
+      metrics.flush();
+    }
+  }
+
+  /**
+   * @return encodings of the dynamic column names seen so far.
+   */
+  public QualifierCache getQualifiers() {
+    return qualifiers;
+  }
+
+  /**
+   * @return number of bytes of the cells of the mutation, as written to HBase.
+   */
+  private static long serializedSize(Mutation mutation) {
+    long size = 0;
+    for (List<Cell> cells : mutation.getFamilyCellMap().values()) {
+      for (Cell cell : cells) {
+        size += KeyValueUtil.length(cell);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Receives the puts of converted records.
+   */
+  public interface PutWriter {
+    void write(Put put) throws IOException;
+  }
+
+  /**
+   * Receives the increments of converted records.
+   */
+  public interface IncrementWriter {
+    void write(Increment increment) throws IOException;
+  }
+}
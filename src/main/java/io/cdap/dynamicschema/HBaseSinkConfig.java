@@ -20,10 +20,13 @@ import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.dynamicschema.api.CompositeRowKey;
 import io.cdap.dynamicschema.api.Expression;
 import io.cdap.dynamicschema.api.ExpressionException;
+import io.cdap.dynamicschema.api.ExpressionResolver;
 import io.cdap.dynamicschema.api.ObserverException;
 import io.cdap.dynamicschema.api.ValidationException;
 import io.cdap.dynamicschema.observer.SchemaObserver;
@@ -31,8 +34,12 @@ import io.cdap.plugin.common.Constants;
 import io.cdap.plugin.common.IdUtils;
 import io.cdap.plugin.common.ReferencePluginConfig;
 import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.regionserver.BloomType;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import javax.annotation.Nullable;
 
 /**
@@ -41,11 +48,107 @@ import javax.annotation.Nullable;
 public class HBaseSinkConfig extends ReferencePluginConfig {
   public static final String TABLE = "table";
   public static final String ROW_KEY = "rowkey";
+  public static final String ROW_KEY_FIELDS = "rowkeyFields";
   public static final String FAMILY = "family";
+  public static final String FAMILY_RULES = "familyRules";
   public static final String QUORUM = "qorum";
   public static final String PORT = "port";
   public static final String DURABILITY = "durability";
   public static final String PATH = "path";
+  public static final String OUTPUT_MODE = "outputMode";
+  public static final String WRITE_BUFFER_SIZE = "writeBufferSize";
+  public static final String MAX_IN_FLIGHT = "maxInFlight";
+  public static final String FLUSH_INTERVAL = "flushInterval";
+  public static final String BULK_LOAD_DIR = "bulkLoadDir";
+  public static final String PARALLEL_THRESHOLD = "parallelThreshold";
+  public static final String MAX_CELLS_PER_MUTATION = "maxCellsPerMutation";
+  public static final String MAX_BYTES_PER_MUTATION = "maxBytesPerMutation";
+  public static final String ROW_KEY_DISTRIBUTION = "rowKeyDistribution";
+  public static final String SALT_BUCKETS = "saltBuckets";
+  public static final String CREATE_TABLE = "createTable";
+  public static final String SPLIT_KEYS = "splitKeys";
+  public static final String REGIONS = "regions";
+  public static final String COMPRESSION = "compression";
+  public static final String BLOOM_FILTER = "bloomFilter";
+  public static final String TIMESTAMP = "timestamp";
+  public static final String TTL = "ttl";
+  public static final String MUTATION_TYPE = "mutationType";
+  public static final String AGGREGATION_SIZE = "aggregationSize";
+
+  /**
+   * How mutations are written to HBase.
+   */
+  public enum OutputMode {
+    /**
+     * Through the default HBase TableOutputFormat.
+     */
+    DIRECT("Direct"),
+
+    /**
+     * Through a client side write buffer with tunable size, concurrency and flush interval.
+     */
+    BUFFERED("Buffered"),
+
+    /**
+     * As HFiles bulk loaded into the table once the run succeeds, bypassing the region server write path.
+     */
+    BULK_LOAD("Bulk Load");
+
+    private final String label;
+
+    OutputMode(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    @Nullable
+    static OutputMode fromLabel(String label) {
+      for (OutputMode mode : values()) {
+        if (mode.label.equalsIgnoreCase(label) || mode.name().equalsIgnoreCase(label)) {
+          return mode;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Kind of mutations written for a record.
+   */
+  public enum MutationType {
+    /**
+     * Puts of the fields and dynamic columns of the record.
+     */
+    PUT("Put"),
+
+    /**
+     * Increments of the counters carried by the dynamic columns of the record, pre-aggregated by every task.
+     */
+    INCREMENT("Increment");
+
+    private final String label;
+
+    MutationType(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    @Nullable
+    static MutationType fromLabel(String label) {
+      for (MutationType type : values()) {
+        if (type.label.equalsIgnoreCase(label) || type.name().equalsIgnoreCase(label)) {
+          return type;
+        }
+      }
+      return null;
+    }
+  }
 
   @Name(PORT)
   @Description("Client port")
@@ -65,15 +168,31 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
   private final String table;
 
   @Name(ROW_KEY)
-  @Description("Expression to specify row key")
+  @Description("Expression to specify row key. Not used when row key fields are specified.")
+  @Nullable
   @Macro
   private final String rowkey;
 
+  @Name(ROW_KEY_FIELDS)
+  @Description("Comma separated list of 'field:encoding' building a binary row key, in key order, instead of the " +
+    "row key expression. Encodings are 'long', 'int', 'ordered_long', 'ordered_int' and 'string'.")
+  @Nullable
+  @Macro
+  private final String rowkeyFields;
+
   @Name(FAMILY)
   @Description("Column Family")
   @Macro
   private final String family;
 
+  @Name(FAMILY_RULES)
+  @Description("Semicolon separated list of 'kind:pattern=family' rules routing the dynamic columns of map and array " +
+    "fields to other column families. Kinds are 'prefix' and 'regex' on the column name and 'type' on the type " +
+    "of the value. The first matching rule applies, columns matching no rule are written to the column family.")
+  @Nullable
+  @Macro
+  private final String familyRules;
+
   @Name(QUORUM)
   @Description("Zookeeper Server Qorum. e.g. <hostname>[[:port]:path]")
   @Nullable
@@ -86,16 +205,168 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
   @Macro
   private final String path;
 
+  @Name(OUTPUT_MODE)
+  @Description("How mutations are written to HBase, 'Direct', 'Buffered' or 'Bulk Load'. Defaults to 'Direct'.")
+  @Nullable
+  @Macro
+  private final String outputMode;
+
+  @Name(WRITE_BUFFER_SIZE)
+  @Description("Size in bytes of the client side write buffer in 'Buffered' output mode, or of the cells " +
+    "sorted in memory by each task before writing HFiles in 'Bulk Load' output mode.")
+  @Nullable
+  @Macro
+  private final Long writeBufferSize;
+
+  @Name(MAX_IN_FLIGHT)
+  @Description("Maximum number of write batches in flight to the region servers in 'Buffered' output mode.")
+  @Nullable
+  @Macro
+  private final Integer maxInFlight;
+
+  @Name(FLUSH_INTERVAL)
+  @Description("Interval in milliseconds at which the write buffer is flushed in 'Buffered' output mode. " +
+    "If not set, the buffer is only flushed when full.")
+  @Nullable
+  @Macro
+  private final Long flushInterval;
+
+  @Name(BULK_LOAD_DIR)
+  @Description("Directory on the cluster file system under which HFiles are staged in 'Bulk Load' output mode. " +
+    "Must be on the same file system as HBase.")
+  @Nullable
+  @Macro
+  private final String bulkLoadDir;
+
+  @Name(PARALLEL_THRESHOLD)
+  @Description("Minimum number of entries of a map or array field for its dynamic columns to be encoded in " +
+    "parallel, for records carrying very large maps or arrays. If not set, all fields are encoded serially.")
+  @Nullable
+  @Macro
+  private final Integer parallelThreshold;
+
+  @Name(MAX_CELLS_PER_MUTATION)
+  @Description("Maximum number of cells written by a single mutation. Rows with more cells are written by " +
+    "several mutations of the same row key. If not set, a row is always written by a single mutation.")
+  @Nullable
+  @Macro
+  private final Integer maxCellsPerMutation;
+
+  @Name(MAX_BYTES_PER_MUTATION)
+  @Description("Maximum number of bytes of the cells written by a single mutation. Rows with more bytes are " +
+    "written by several mutations of the same row key. If not set, a row is always written by a single mutation.")
+  @Nullable
+  @Macro
+  private final Long maxBytesPerMutation;
+
+  @Name(ROW_KEY_DISTRIBUTION)
+  @Description("How row keys are transformed to spread monotonically increasing keys across regions, 'None', " +
+    "'Salt', 'Hash Prefix' or 'Reverse'. Defaults to 'None'.")
+  @Nullable
+  @Macro
+  private final String rowKeyDistribution;
+
+  @Name(SALT_BUCKETS)
+  @Description("Number of salt buckets row keys are spread across with the 'Salt' row key distribution, " +
+    "in range 1-256.")
+  @Nullable
+  @Macro
+  private final Integer saltBuckets;
+
+  @Name(CREATE_TABLE)
+  @Description("Whether to create the table when it does not exist, pre-split into regions. Defaults to false.")
+  @Nullable
+  @Macro
+  private final Boolean createTable;
+
+  @Name(SPLIT_KEYS)
+  @Description("Comma separated row keys a created table is pre-split at, with non printable bytes escaped as " +
+    "\\xNN. If not set, the split keys are derived from the row key distribution.")
+  @Nullable
+  @Macro
+  private final String splitKeys;
+
+  @Name(REGIONS)
+  @Description("Number of regions a created table is pre-split into when the split keys are derived from the " +
+    "'Salt' or 'Hash Prefix' row key distribution. Defaults to one region per salt bucket.")
+  @Nullable
+  @Macro
+  private final Integer regions;
+
+  @Name(COMPRESSION)
+  @Description("Compression of the column family of a created table, 'NONE', 'SNAPPY', 'GZ', 'LZ4' or 'LZO'. " +
+    "Defaults to 'NONE'.")
+  @Nullable
+  @Macro
+  private final String compression;
+
+  @Name(BLOOM_FILTER)
+  @Description("Bloom filter of the column family of a created table, 'NONE', 'ROW' or 'ROWCOL'. " +
+    "Defaults to 'ROW'.")
+  @Nullable
+  @Macro
+  private final String bloomFilter;
+
+  @Name(TIMESTAMP)
+  @Description("Input field name or expression giving the timestamp of the written cells, as epoch milliseconds or " +
+    "an ISO-8601 instant. Long fields with a timestamp logical type are read in their unit. If not set, cells get " +
+    "the time of the region server.")
+  @Nullable
+  @Macro
+  private final String timestamp;
+
+  @Name(TTL)
+  @Description("Time to live in seconds of the written cells, after which HBase expires them. If not set, cells " +
+    "expire according to the column family settings.")
+  @Nullable
+  @Macro
+  private final Long ttl;
+
+  @Name(MUTATION_TYPE)
+  @Description("Kind of mutations written, 'Put' or 'Increment'. In 'Increment' mode the dynamic columns are " +
+    "counters added to the stored values and the other fields are not written. Defaults to 'Put'.")
+  @Nullable
+  @Macro
+  private final String mutationType;
+
+  @Name(AGGREGATION_SIZE)
+  @Description("Maximum number of distinct counters each task adds up in memory in 'Increment' mode before " +
+    "writing them. Defaults to 10000.")
+  @Nullable
+  @Macro
+  private final Integer aggregationSize;
+
   public HBaseSinkConfig(String referenceName, String table, String rowkey, String family, @Nullable String qorum,
                          @Nullable String port, @Nullable String durability, @Nullable String path) {
     super(referenceName);
     this.table = table;
     this.rowkey = rowkey;
+    this.rowkeyFields = null;
     this.family = family;
+    this.familyRules = null;
     this.qorum = qorum;
     this.port = port;
     this.durability = durability;
     this.path = path;
+    this.outputMode = null;
+    this.writeBufferSize = null;
+    this.maxInFlight = null;
+    this.flushInterval = null;
+    this.bulkLoadDir = null;
+    this.parallelThreshold = null;
+    this.maxCellsPerMutation = null;
+    this.maxBytesPerMutation = null;
+    this.rowKeyDistribution = null;
+    this.saltBuckets = null;
+    this.createTable = null;
+    this.splitKeys = null;
+    this.regions = null;
+    this.compression = null;
+    this.bloomFilter = null;
+    this.timestamp = null;
+    this.ttl = null;
+    this.mutationType = null;
+    this.aggregationSize = null;
   }
 
   private HBaseSinkConfig(Builder builder) {
@@ -104,9 +375,30 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     durability = builder.durability;
     table = builder.table;
     rowkey = builder.rowkey;
+    rowkeyFields = builder.rowkeyFields;
     family = builder.family;
+    familyRules = builder.familyRules;
     qorum = builder.qorum;
     path = builder.path;
+    outputMode = builder.outputMode;
+    writeBufferSize = builder.writeBufferSize;
+    maxInFlight = builder.maxInFlight;
+    flushInterval = builder.flushInterval;
+    bulkLoadDir = builder.bulkLoadDir;
+    parallelThreshold = builder.parallelThreshold;
+    maxCellsPerMutation = builder.maxCellsPerMutation;
+    maxBytesPerMutation = builder.maxBytesPerMutation;
+    rowKeyDistribution = builder.rowKeyDistribution;
+    saltBuckets = builder.saltBuckets;
+    createTable = builder.createTable;
+    splitKeys = builder.splitKeys;
+    regions = builder.regions;
+    compression = builder.compression;
+    bloomFilter = builder.bloomFilter;
+    timestamp = builder.timestamp;
+    ttl = builder.ttl;
+    mutationType = builder.mutationType;
+    aggregationSize = builder.aggregationSize;
   }
 
   public static Builder builder() {
@@ -120,9 +412,30 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
       .setDurability(copy.durability)
       .setTable(copy.table)
       .setRowkey(copy.rowkey)
+      .setRowkeyFields(copy.rowkeyFields)
       .setFamily(copy.family)
+      .setFamilyRules(copy.familyRules)
       .setQorum(copy.qorum)
-      .setPath(copy.path);
+      .setPath(copy.path)
+      .setOutputMode(copy.outputMode)
+      .setWriteBufferSize(copy.writeBufferSize)
+      .setMaxInFlight(copy.maxInFlight)
+      .setFlushInterval(copy.flushInterval)
+      .setBulkLoadDir(copy.bulkLoadDir)
+      .setParallelThreshold(copy.parallelThreshold)
+      .setMaxCellsPerMutation(copy.maxCellsPerMutation)
+      .setMaxBytesPerMutation(copy.maxBytesPerMutation)
+      .setRowKeyDistribution(copy.rowKeyDistribution)
+      .setSaltBuckets(copy.saltBuckets)
+      .setCreateTable(copy.createTable)
+      .setSplitKeys(copy.splitKeys)
+      .setRegions(copy.regions)
+      .setCompression(copy.compression)
+      .setBloomFilter(copy.bloomFilter)
+      .setTimestamp(copy.timestamp)
+      .setTtl(copy.ttl)
+      .setMutationType(copy.mutationType)
+      .setAggregationSize(copy.aggregationSize);
   }
 
   public void validate(FailureCollector failureCollector, Schema inputSchema) {
@@ -144,14 +457,24 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
         .withStacktrace(e.getStackTrace());
     }
 
+    validateWriteOptions(failureCollector);
+
     try {
       DynamicSchemaValidator dcv = new DynamicSchemaValidator();
       SchemaObserver so = new SchemaObserver(dcv);
       so.traverse(inputSchema);
       dcv.validate();
 
-      validateRowKey(failureCollector, inputSchema);
+      if (Strings.isNullOrEmpty(rowkeyFields) && !containsMacro(ROW_KEY_FIELDS)) {
+        validateRowKey(failureCollector, inputSchema);
+      } else {
+        validateRowKeyFields(failureCollector, inputSchema);
+      }
+      validateRowKeyDistribution(failureCollector);
+      validateTableCreation(failureCollector);
       validateFamilyKey(failureCollector, inputSchema);
+      validateFamilyRules(failureCollector);
+      validateTimestamp(failureCollector, inputSchema);
 
     } catch (ValidationException | ObserverException e) {
       failureCollector.addFailure("Invalid input schema: " + e.getMessage(),
@@ -159,10 +482,145 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     }
   }
 
+  private void validateWriteOptions(FailureCollector failureCollector) {
+    if (!containsMacro(OUTPUT_MODE) && getOutputMode() == null) {
+      failureCollector.addFailure(String.format("Output mode '%s' is not supported", outputMode),
+                                  "Output mode must be one of 'Direct', 'Buffered' or 'Bulk Load'")
+        .withConfigProperty(OUTPUT_MODE);
+    } else if (getOutputMode() == OutputMode.BULK_LOAD && !containsMacro(BULK_LOAD_DIR)
+      && Strings.isNullOrEmpty(bulkLoadDir)) {
+      failureCollector.addFailure("Bulk load directory must be specified in 'Bulk Load' output mode", null)
+        .withConfigProperty(BULK_LOAD_DIR);
+    }
+    if (writeBufferSize != null && writeBufferSize <= 0) {
+      failureCollector.addFailure("Write buffer size must be a positive number of bytes", null)
+        .withConfigProperty(WRITE_BUFFER_SIZE);
+    }
+    if (maxInFlight != null && maxInFlight <= 0) {
+      failureCollector.addFailure("Maximum in flight batches must be a positive number", null)
+        .withConfigProperty(MAX_IN_FLIGHT);
+    }
+    if (flushInterval != null && flushInterval < 0) {
+      failureCollector.addFailure("Flush interval must not be negative", null)
+        .withConfigProperty(FLUSH_INTERVAL);
+    }
+    if (parallelThreshold != null && parallelThreshold <= 0) {
+      failureCollector.addFailure("Parallel encoding threshold must be a positive number of entries", null)
+        .withConfigProperty(PARALLEL_THRESHOLD);
+    }
+    if (maxCellsPerMutation != null && maxCellsPerMutation <= 0) {
+      failureCollector.addFailure("Maximum cells per mutation must be a positive number", null)
+        .withConfigProperty(MAX_CELLS_PER_MUTATION);
+    }
+    if (maxBytesPerMutation != null && maxBytesPerMutation <= 0) {
+      failureCollector.addFailure("Maximum bytes per mutation must be a positive number", null)
+        .withConfigProperty(MAX_BYTES_PER_MUTATION);
+    }
+    validateMutationType(failureCollector);
+    if (ttl != null && ttl <= 0) {
+      failureCollector.addFailure("Time to live must be a positive number of seconds", null)
+        .withConfigProperty(TTL);
+    } else if (ttl != null && getOutputMode() == OutputMode.BULK_LOAD) {
+      failureCollector.addFailure("Time to live is not supported in 'Bulk Load' output mode",
+                                  "Set the time to live of the column family instead")
+        .withConfigProperty(TTL);
+    }
+  }
+
+  private void validateMutationType(FailureCollector failureCollector) {
+    if (containsMacro(MUTATION_TYPE)) {
+      return;
+    }
+    MutationType type = getMutationType();
+    if (type == null) {
+      failureCollector.addFailure(String.format("Mutation type '%s' is not supported", mutationType),
+                                  "Mutation type must be one of 'Put' or 'Increment'")
+        .withConfigProperty(MUTATION_TYPE);
+      return;
+    }
+    if (aggregationSize != null && aggregationSize <= 0) {
+      failureCollector.addFailure("Aggregation size must be a positive number of counters", null)
+        .withConfigProperty(AGGREGATION_SIZE);
+    }
+    if (type != MutationType.INCREMENT) {
+      return;
+    }
+    if (!containsMacro(OUTPUT_MODE) && getOutputMode() == OutputMode.BULK_LOAD) {
+      failureCollector.addFailure("Increments cannot be bulk loaded", "Select output mode 'Direct' or 'Buffered'")
+        .withConfigProperty(OUTPUT_MODE);
+    }
+    if (!Strings.isNullOrEmpty(timestamp) || containsMacro(TIMESTAMP)) {
+      failureCollector.addFailure("Cell timestamp is not supported in 'Increment' mode",
+                                  "Incremented cells get the time of the region server")
+        .withConfigProperty(TIMESTAMP);
+    }
+  }
+
+  private void validateRowKeyDistribution(FailureCollector failureCollector) {
+    if (containsMacro(ROW_KEY_DISTRIBUTION)) {
+      return;
+    }
+    RowKeyDistributor.Strategy strategy = getRowKeyDistribution();
+    if (strategy == null) {
+      failureCollector.addFailure(String.format("Row key distribution '%s' is not supported", rowKeyDistribution),
+                                  "Row key distribution must be one of 'None', 'Salt', 'Hash Prefix' or 'Reverse'")
+        .withConfigProperty(ROW_KEY_DISTRIBUTION);
+    } else if (strategy == RowKeyDistributor.Strategy.SALT && !containsMacro(SALT_BUCKETS)
+      && (saltBuckets == null || saltBuckets < 1 || saltBuckets > RowKeyDistributor.MAX_SALT_BUCKETS)) {
+      failureCollector.addFailure("Salt buckets must be a number in range 1-256 with the 'Salt' row key distribution",
+                                  null)
+        .withConfigProperty(SALT_BUCKETS);
+    }
+  }
+
+  private void validateTableCreation(FailureCollector failureCollector) {
+    if (!isCreateTable()) {
+      return;
+    }
+    if (regions != null && regions <= 0) {
+      failureCollector.addFailure("Number of regions must be a positive number", null)
+        .withConfigProperty(REGIONS);
+    }
+    if (!containsMacro(COMPRESSION) && getCompression() == null) {
+      failureCollector.addFailure(String.format("Compression '%s' is not supported", compression),
+                                  "Compression must be one of 'NONE', 'SNAPPY', 'GZ', 'LZ4' or 'LZO'")
+        .withConfigProperty(COMPRESSION);
+    }
+    if (!containsMacro(BLOOM_FILTER) && getBloomFilter() == null) {
+      failureCollector.addFailure(String.format("Bloom filter '%s' is not supported", bloomFilter),
+                                  "Bloom filter must be one of 'NONE', 'ROW' or 'ROWCOL'")
+        .withConfigProperty(BLOOM_FILTER);
+    }
+    if (!containsMacro(FAMILY) && family != null) {
+      try {
+        if (!new Expression(family).getVariables().isEmpty()) {
+          failureCollector.addFailure("Column family must be a constant to create the table",
+                                      "Create the table beforehand when the column family is an expression")
+            .withConfigProperty(FAMILY)
+            .withConfigProperty(CREATE_TABLE);
+        }
+      } catch (ExpressionException e) {
+        // Reported by the column family validation.
+      }
+    }
+  }
+
+  private void validateRowKeyFields(FailureCollector failureCollector, Schema inputSchema) {
+    if (containsMacro(ROW_KEY_FIELDS)) {
+      return;
+    }
+    CompositeRowKey.validate(rowkeyFields, inputSchema, failureCollector, ROW_KEY_FIELDS);
+  }
+
   private void validateRowKey(FailureCollector failureCollector, Schema inputSchema) {
     if (containsMacro(ROW_KEY) && rowkey == null) {
       return;
     }
+    if (Strings.isNullOrEmpty(rowkey)) {
+      failureCollector.addFailure("Row key is not specified", "Specify a row key expression or row key fields")
+        .withConfigProperty(ROW_KEY);
+      return;
+    }
     // Compile Row Key Expression and make sure it's ok.
     Expression rowKeyExpression;
     try {
@@ -219,6 +677,19 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     }
 
     List<String> variables = familyExpression.getVariables();
+    ExpressionResolver familyResolver = ExpressionResolver.of(familyExpression);
+    if (familyResolver.isConstant()) {
+      try {
+        if (Strings.isNullOrEmpty(familyResolver.resolve(null))) {
+          failureCollector.addFailure(
+            String.format("Column family expression '%s' evaluates to an empty column family", family),
+            "Column Family must evaluate to a non empty name")
+            .withConfigProperty(FAMILY);
+        }
+      } catch (ExpressionException e) {
+        // Constant resolvers never fail.
+      }
+    }
     for (String variable : variables) {
       Schema.Field field = inputSchema.getField(variable);
       if (field == null) {
@@ -236,6 +707,60 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     }
   }
 
+  private void validateFamilyRules(FailureCollector failureCollector) {
+    if (containsMacro(FAMILY_RULES)) {
+      return;
+    }
+    try {
+      FamilyRouter.parse(familyRules);
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(e.getMessage(),
+                                  "Family rules must be a semicolon separated list of 'kind:pattern=family' with " +
+                                    "kind 'prefix', 'regex' or 'type'")
+        .withConfigProperty(FAMILY_RULES);
+    }
+  }
+
+  private void validateTimestamp(FailureCollector failureCollector, Schema inputSchema) {
+    if (containsMacro(TIMESTAMP) || Strings.isNullOrEmpty(timestamp)) {
+      return;
+    }
+    Expression timestampExpression;
+    try {
+      timestampExpression = new Expression(timestamp);
+    } catch (ExpressionException e) {
+      failureCollector.addFailure("Error in specifying timestamp: " + e.getMessage(),
+                                  "Timestamp must be a valid expression")
+        .withConfigProperty(TIMESTAMP)
+        .withStacktrace(e.getStackTrace());
+      return;
+    }
+
+    for (String variable : timestampExpression.getVariables()) {
+      Schema.Field field = inputSchema.getField(variable);
+      if (field == null) {
+        failureCollector.addFailure(
+          String.format("Timestamp expression '%s' has variable '%s' that is not present in input field",
+                        timestamp, variable), null)
+          .withConfigProperty(TIMESTAMP);
+      } else if (!field.getSchema().isSimpleOrNullableSimple()) {
+        failureCollector.addFailure(
+          String.format("Timestamp expression '%s' has variable '%s' that is not of type " +
+                          "'string', 'int', 'long', 'float', 'double'", timestamp, variable), null)
+          .withInputSchemaField(field.getName())
+          .withConfigProperty(TIMESTAMP);
+      }
+    }
+    String name = ExpressionResolver.of(timestampExpression).getField();
+    Schema.Field field = name == null ? null : inputSchema.getField(name);
+    if (field != null && field.getSchema().isSimpleOrNullableSimple() && !CellTimestamp.isTimestampField(field)) {
+      failureCollector.addFailure(
+        String.format("Timestamp field '%s' is not of type 'long' or 'string'", name), null)
+        .withInputSchemaField(name)
+        .withConfigProperty(TIMESTAMP);
+    }
+  }
+
   /**
    * @return configured port, if empty returns default 2181
    */
@@ -250,7 +775,8 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     if (durability == null) {
       return Durability.SYNC_WAL;
     }
-    if (durability.equalsIgnoreCase("wal ssynchronous")) {
+    // 'WAL Ssynchronous' is accepted for pipelines created before the label was fixed.
+    if (durability.equalsIgnoreCase("wal asynchronous") || durability.equalsIgnoreCase("wal ssynchronous")) {
       return Durability.ASYNC_WAL;
     } else if (durability.equalsIgnoreCase("wal asynchronous & force disk write")) {
       return Durability.FSYNC_WAL;
@@ -277,6 +803,21 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     return table;
   }
 
+  /**
+   * @return binary row key built from the row key fields, null if the row key is an expression.
+   */
+  @Nullable
+  public CompositeRowKey getCompositeRowKey() {
+    if (Strings.isNullOrEmpty(rowkeyFields)) {
+      return null;
+    }
+    try {
+      return CompositeRowKey.parse(rowkeyFields);
+    } catch (ExpressionException e) {
+      throw new IllegalStateException("Failed to parse 'rowkeyFields'", e);
+    }
+  }
+
   public Expression getRowKeyExpression() {
     try {
       return new Expression(rowkey);
@@ -293,6 +834,159 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     }
   }
 
+  @Nullable
+  public String getFamilyRules() {
+    return familyRules;
+  }
+
+  /**
+   * @return expression of the cell timestamp, null if cells get the time of the region server.
+   */
+  @Nullable
+  public Expression getTimestampExpression() {
+    if (Strings.isNullOrEmpty(timestamp)) {
+      return null;
+    }
+    try {
+      return new Expression(timestamp);
+    } catch (ExpressionException e) {
+      throw new IllegalStateException("Failed to resolve expression for 'timestamp'", e);
+    }
+  }
+
+  /**
+   * @return time to live of the written cells in seconds, null if not set.
+   */
+  @Nullable
+  public Long getTtl() {
+    return ttl;
+  }
+
+  /**
+   * @return {@link MutationType} based on user selection, null if the selection is not supported.
+   */
+  @Nullable
+  public MutationType getMutationType() {
+    return Strings.isNullOrEmpty(mutationType) ? MutationType.PUT : MutationType.fromLabel(mutationType.trim());
+  }
+
+  @Nullable
+  public Integer getAggregationSize() {
+    return aggregationSize;
+  }
+
+  /**
+   * @return {@link OutputMode} based on user selection, null if the selection is not supported.
+   */
+  @Nullable
+  public OutputMode getOutputMode() {
+    return Strings.isNullOrEmpty(outputMode) ? OutputMode.DIRECT : OutputMode.fromLabel(outputMode.trim());
+  }
+
+  @Nullable
+  public Long getWriteBufferSize() {
+    return writeBufferSize;
+  }
+
+  @Nullable
+  public Integer getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  @Nullable
+  public Long getFlushInterval() {
+    return flushInterval;
+  }
+
+  @Nullable
+  public String getBulkLoadDir() {
+    return bulkLoadDir;
+  }
+
+  @Nullable
+  public Integer getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  @Nullable
+  public Integer getMaxCellsPerMutation() {
+    return maxCellsPerMutation;
+  }
+
+  @Nullable
+  public Long getMaxBytesPerMutation() {
+    return maxBytesPerMutation;
+  }
+
+  /**
+   * @return row key distribution, null if not supported.
+   */
+  @Nullable
+  public RowKeyDistributor.Strategy getRowKeyDistribution() {
+    return Strings.isNullOrEmpty(rowKeyDistribution) ?
+      RowKeyDistributor.Strategy.NONE : RowKeyDistributor.Strategy.fromLabel(rowKeyDistribution.trim());
+  }
+
+  @Nullable
+  public Integer getSaltBuckets() {
+    return saltBuckets;
+  }
+
+  public boolean isCreateTable() {
+    return Boolean.TRUE.equals(createTable);
+  }
+
+  /**
+   * @return keys a created table is pre-split at, null if not specified.
+   */
+  @Nullable
+  public byte[][] getSplitKeys() {
+    if (Strings.isNullOrEmpty(splitKeys)) {
+      return null;
+    }
+    List<byte[]> keys = new ArrayList<>();
+    for (String key : splitKeys.split(",")) {
+      key = key.trim();
+      if (!key.isEmpty()) {
+        keys.add(Bytes.toBytesBinary(key));
+      }
+    }
+    return keys.toArray(new byte[0][]);
+  }
+
+  @Nullable
+  public Integer getRegions() {
+    return regions;
+  }
+
+  /**
+   * @return compression of the column family of a created table, null if not supported.
+   */
+  @Nullable
+  public Compression.Algorithm getCompression() {
+    String name = Strings.isNullOrEmpty(compression) ? "NONE" : compression.trim().toUpperCase(Locale.ROOT);
+    for (Compression.Algorithm algorithm : Compression.Algorithm.values()) {
+      if (algorithm.name().equals(name)) {
+        return algorithm;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return bloom filter of the column family of a created table, null if not supported.
+   */
+  @Nullable
+  public BloomType getBloomFilter() {
+    String name = Strings.isNullOrEmpty(bloomFilter) ? "ROW" : bloomFilter.trim().toUpperCase(Locale.ROOT);
+    for (BloomType type : BloomType.values()) {
+      if (type.name().equals(name)) {
+        return type;
+      }
+    }
+    return null;
+  }
+
   @Nullable
   public String getQorum() {
     return qorum;
@@ -309,9 +1003,30 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
     private String durability;
     private String table;
     private String rowkey;
+    private String rowkeyFields;
     private String family;
+    private String familyRules;
     private String qorum;
     private String path;
+    private String outputMode;
+    private Long writeBufferSize;
+    private Integer maxInFlight;
+    private Long flushInterval;
+    private String bulkLoadDir;
+    private Integer parallelThreshold;
+    private Integer maxCellsPerMutation;
+    private Long maxBytesPerMutation;
+    private String rowKeyDistribution;
+    private Integer saltBuckets;
+    private Boolean createTable;
+    private String splitKeys;
+    private Integer regions;
+    private String compression;
+    private String bloomFilter;
+    private String timestamp;
+    private Long ttl;
+    private String mutationType;
+    private Integer aggregationSize;
 
     private Builder() {
     }
@@ -341,11 +1056,21 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
       return this;
     }
 
+    public Builder setRowkeyFields(String val) {
+      rowkeyFields = val;
+      return this;
+    }
+
     public Builder setFamily(String val) {
       family = val;
       return this;
     }
 
+    public Builder setFamilyRules(String val) {
+      familyRules = val;
+      return this;
+    }
+
     public Builder setQorum(String val) {
       qorum = val;
       return this;
@@ -356,6 +1081,101 @@ public class HBaseSinkConfig extends ReferencePluginConfig {
       return this;
     }
 
+    public Builder setOutputMode(String val) {
+      outputMode = val;
+      return this;
+    }
+
+    public Builder setWriteBufferSize(Long val) {
+      writeBufferSize = val;
+      return this;
+    }
+
+    public Builder setMaxInFlight(Integer val) {
+      maxInFlight = val;
+      return this;
+    }
+
+    public Builder setFlushInterval(Long val) {
+      flushInterval = val;
+      return this;
+    }
+
+    public Builder setBulkLoadDir(String val) {
+      bulkLoadDir = val;
+      return this;
+    }
+
+    public Builder setParallelThreshold(Integer val) {
+      parallelThreshold = val;
+      return this;
+    }
+
+    public Builder setMaxCellsPerMutation(Integer val) {
+      maxCellsPerMutation = val;
+      return this;
+    }
+
+    public Builder setMaxBytesPerMutation(Long val) {
+      maxBytesPerMutation = val;
+      return this;
+    }
+
+    public Builder setRowKeyDistribution(String val) {
+      rowKeyDistribution = val;
+      return this;
+    }
+
+    public Builder setSaltBuckets(Integer val) {
+      saltBuckets = val;
+      return this;
+    }
+
+    public Builder setCreateTable(Boolean val) {
+      createTable = val;
+      return this;
+    }
+
+    public Builder setSplitKeys(String val) {
+      splitKeys = val;
+      return this;
+    }
+
+    public Builder setRegions(Integer val) {
+      regions = val;
+      return this;
+    }
+
+    public Builder setCompression(String val) {
+      compression = val;
+      return this;
+    }
+
+    public Builder setBloomFilter(String val) {
+      bloomFilter = val;
+      return this;
+    }
+
+    public Builder setTimestamp(String val) {
+      timestamp = val;
+      return this;
+    }
+
+    public Builder setTtl(Long val) {
+      ttl = val;
+      return this;
+    }
+
+    public Builder setMutationType(String val) {
+      mutationType = val;
+      return this;
+    }
+
+    public Builder setAggregationSize(Integer val) {
+      aggregationSize = val;
+      return this;
+    }
+
     public HBaseSinkConfig build() {
       return new HBaseSinkConfig(this);
     }
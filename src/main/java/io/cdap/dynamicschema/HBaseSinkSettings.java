@@ -0,0 +1,279 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import com.google.common.base.Strings;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.dynamicschema.api.ExpressionException;
+import io.cdap.dynamicschema.api.ExpressionResolver;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Settings of the DynHBase sink resolved once from its {@link HBaseSinkConfig}.
+ *
+ * The configuration holds the raw, possibly macro valued, user input. Once macros are substituted, it is parsed
+ * into an instance of this class so that the record path only reads precomputed values.
+ */
+public final class HBaseSinkSettings {
+  private static final int DEFAULT_AGGREGATION_SIZE = 10000;
+
+  private final String table;
+  private final String quorum;
+  @Nullable
+  private final String zookeeperHosts;
+  private final int clientPort;
+  @Nullable
+  private final String zookeeperParent;
+  private final Durability durability;
+  private final HBaseSinkConfig.OutputMode outputMode;
+  @Nullable
+  private final Long writeBufferSize;
+  @Nullable
+  private final Integer maxInFlight;
+  @Nullable
+  private final Long flushInterval;
+  @Nullable
+  private final String bulkLoadDir;
+  @Nullable
+  private final Integer parallelThreshold;
+  @Nullable
+  private final Integer maxCellsPerMutation;
+  @Nullable
+  private final Long maxBytesPerMutation;
+  private final RowKeyDistributor rowKeyDistributor;
+  private final boolean createTable;
+  private final byte[][] splitKeys;
+  @Nullable
+  private final Compression.Algorithm compression;
+  @Nullable
+  private final BloomType bloomFilter;
+  @Nullable
+  private final byte[] constantFamily;
+  @Nullable
+  private final String familyRules;
+  @Nullable
+  private final Long ttlMillis;
+  private final HBaseSinkConfig.MutationType mutationType;
+  private final int aggregationSize;
+
+  private HBaseSinkSettings(HBaseSinkConfig config, @Nullable byte[] constantFamily) {
+    this.table = config.getTable();
+    this.quorum = config.getQuorum();
+    this.zookeeperHosts = Strings.emptyToNull(config.getQorum());
+    this.clientPort = config.getClientPort();
+    this.zookeeperParent = Strings.emptyToNull(config.getPath());
+    this.durability = config.getDurability();
+    this.outputMode = config.getOutputMode();
+    this.writeBufferSize = config.getWriteBufferSize();
+    this.maxInFlight = config.getMaxInFlight();
+    this.flushInterval = config.getFlushInterval();
+    this.bulkLoadDir = config.getBulkLoadDir();
+    this.parallelThreshold = config.getParallelThreshold();
+    this.maxCellsPerMutation = config.getMaxCellsPerMutation();
+    this.maxBytesPerMutation = config.getMaxBytesPerMutation();
+    this.rowKeyDistributor = RowKeyDistributor.of(config.getRowKeyDistribution(), config.getSaltBuckets());
+    this.createTable = config.isCreateTable();
+    byte[][] splitKeys = config.getSplitKeys();
+    if (splitKeys == null) {
+      splitKeys = rowKeyDistributor.getSplitKeys(config.getRegions());
+    }
+    Arrays.sort(splitKeys, Bytes.BYTES_COMPARATOR);
+    this.splitKeys = splitKeys;
+    this.compression = config.getCompression();
+    this.bloomFilter = config.getBloomFilter();
+    this.constantFamily = constantFamily;
+    this.familyRules = Strings.emptyToNull(config.getFamilyRules());
+    this.ttlMillis = config.getTtl() == null ? null : TimeUnit.SECONDS.toMillis(config.getTtl());
+    this.mutationType = config.getMutationType();
+    this.aggregationSize = config.getAggregationSize() == null ?
+      DEFAULT_AGGREGATION_SIZE : config.getAggregationSize();
+  }
+
+  /**
+   * Resolves the settings of a validated configuration.
+   *
+   * @param config of the sink, with macros substituted.
+   * @param familyResolver resolver of the column family expression.
+   * @return settings of the sink.
+   * @throws ExpressionException if the column family expression is a constant that evaluates to an empty name.
+   */
+  public static HBaseSinkSettings of(HBaseSinkConfig config, ExpressionResolver familyResolver)
+    throws ExpressionException {
+    if (!familyResolver.isConstant()) {
+      return new HBaseSinkSettings(config, null);
+    }
+    String family = familyResolver.resolve(null);
+    if (Strings.isNullOrEmpty(family)) {
+      throw new ExpressionException("Column family expression evaluates to an empty column family");
+    }
+    return new HBaseSinkSettings(config, Bytes.toBytes(family));
+  }
+
+  /**
+   * @return HBase configuration connecting to the cluster of the sink.
+   */
+  public Configuration createConfiguration() {
+    return createConfiguration(zookeeperHosts, clientPort, zookeeperParent);
+  }
+
+  /**
+   * @param zookeeperHosts comma separated ZooKeeper hosts, localhost if null.
+   * @param clientPort ZooKeeper client port.
+   * @param zookeeperParent parent node of HBase in ZooKeeper, the HBase default if null.
+   * @return HBase configuration connecting to the cluster.
+   */
+  static Configuration createConfiguration(@Nullable String zookeeperHosts, int clientPort,
+                                           @Nullable String zookeeperParent) {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(HConstants.ZOOKEEPER_QUORUM, zookeeperHosts == null ? "localhost" : zookeeperHosts);
+    conf.setInt(HConstants.ZOOKEEPER_CLIENT_PORT, clientPort);
+    if (zookeeperParent != null) {
+      conf.set(HConstants.ZOOKEEPER_ZNODE_PARENT, zookeeperParent);
+    }
+    return conf;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * @return cluster key of the form {@code hosts:port:parent}.
+   */
+  public String getQuorum() {
+    return quorum;
+  }
+
+  public int getClientPort() {
+    return clientPort;
+  }
+
+  public Durability getDurability() {
+    return durability;
+  }
+
+  public HBaseSinkConfig.OutputMode getOutputMode() {
+    return outputMode;
+  }
+
+  @Nullable
+  public Long getWriteBufferSize() {
+    return writeBufferSize;
+  }
+
+  @Nullable
+  public Integer getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  @Nullable
+  public Long getFlushInterval() {
+    return flushInterval;
+  }
+
+  @Nullable
+  public String getBulkLoadDir() {
+    return bulkLoadDir;
+  }
+
+  @Nullable
+  public Integer getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  @Nullable
+  public Integer getMaxCellsPerMutation() {
+    return maxCellsPerMutation;
+  }
+
+  @Nullable
+  public Long getMaxBytesPerMutation() {
+    return maxBytesPerMutation;
+  }
+
+  public RowKeyDistributor getRowKeyDistributor() {
+    return rowKeyDistributor;
+  }
+
+  /**
+   * @return true if the table is created when it does not exist.
+   */
+  public boolean isCreateTable() {
+    return createTable;
+  }
+
+  /**
+   * @return sorted keys a created table is pre-split at, empty for a single region. Must not be modified.
+   */
+  public byte[][] getSplitKeys() {
+    return splitKeys;
+  }
+
+  @Nullable
+  public Compression.Algorithm getCompression() {
+    return compression;
+  }
+
+  @Nullable
+  public BloomType getBloomFilter() {
+    return bloomFilter;
+  }
+
+  /**
+   * @return encoded column family if the family expression is a constant, null otherwise. Must not be modified.
+   */
+  @Nullable
+  public byte[] getConstantFamily() {
+    return constantFamily;
+  }
+
+  /**
+   * @return rules routing dynamic columns to other column families, null if there are none.
+   */
+  @Nullable
+  public String getFamilyRules() {
+    return familyRules;
+  }
+
+  /**
+   * @return time to live of the written cells in milliseconds, null if not set.
+   */
+  @Nullable
+  public Long getTtlMillis() {
+    return ttlMillis;
+  }
+
+  public HBaseSinkConfig.MutationType getMutationType() {
+    return mutationType;
+  }
+
+  /**
+   * @return maximum number of distinct counters added up in memory before being written in 'Increment' mode.
+   */
+  public int getAggregationSize() {
+    return aggregationSize;
+  }
+}
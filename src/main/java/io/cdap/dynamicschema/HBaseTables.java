@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import com.google.common.base.Strings;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.etl.api.FailureCollector;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.MasterNotRunningException;
+import org.apache.hadoop.hbase.TableExistsException;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.ZooKeeperConnectionException;
+import org.apache.hadoop.hbase.client.Admin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Checks and creation of the HBase table written by the DynHBase sinks.
+ */
+final class HBaseTables {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseTables.class);
+
+  private HBaseTables() {
+  }
+
+  /**
+   * Checks that the table exists, unless the sink creates it or the cluster is only known at runtime, and that it
+   * has the column families dynamic columns are routed to.
+   *
+   * @param config of the sink.
+   * @param failureCollector receiving the failure if the table does not exist or HBase cannot be reached.
+   */
+  static void validate(HBaseSinkConfig config, FailureCollector failureCollector) {
+    if (config.containsMacro(HBaseSinkConfig.TABLE) || config.containsMacro(HBaseSinkConfig.QUORUM)
+      || config.containsMacro(HBaseSinkConfig.PORT) || config.containsMacro(HBaseSinkConfig.PATH)) {
+      return;
+    }
+    // Check if the table exists on HBase.
+    Configuration conf = HBaseSinkSettings.createConfiguration(
+      Strings.emptyToNull(config.getQorum()), config.getClientPort(), Strings.emptyToNull(config.getPath()));
+    try (HBaseConnections.Lease lease = HBaseConnections.acquire(conf);
+         Admin admin = lease.getConnection().getAdmin()) {
+      TableName tableName = TableName.valueOf(config.getTable());
+      if (!admin.tableExists(tableName)) {
+        if (!config.isCreateTable()) {
+          failureCollector.addFailure(String.format("HBase table '%s' does not exist", config.getTable()), null)
+            .withConfigProperty(HBaseSinkConfig.TABLE);
+        }
+      } else if (!config.containsMacro(HBaseSinkConfig.FAMILY_RULES)) {
+        validateRoutedFamilies(config, admin.getTableDescriptor(tableName), failureCollector);
+      }
+    } catch (MasterNotRunningException e) {
+      failureCollector.addFailure("HBase master is not running", "Check the status of HBase")
+        .withStacktrace(e.getStackTrace());
+    } catch (ZooKeeperConnectionException e) {
+      failureCollector.addFailure("Unable to connect to zookeeper: " + e.getMessage(),
+                                  "Check zookeeper quorum configuration")
+        .withStacktrace(e.getStackTrace());
+    } catch (IOException e) {
+      failureCollector.addFailure(String.format("Unable to connect to HBase table '%s'", config.getTable()), null)
+        .withStacktrace(e.getStackTrace());
+    }
+  }
+
+  private static void validateRoutedFamilies(HBaseSinkConfig config, HTableDescriptor descriptor,
+                                             FailureCollector failureCollector) {
+    FamilyRouter router;
+    try {
+      router = FamilyRouter.parse(config.getFamilyRules());
+    } catch (IllegalArgumentException e) {
+      // Reported by the family rules validation.
+      return;
+    }
+    if (router == null) {
+      return;
+    }
+    for (String family : router.getFamilies()) {
+      if (!descriptor.hasFamily(Bytes.toBytes(family))) {
+        failureCollector.addFailure(
+          String.format("Column family '%s' of the family rules does not exist in HBase table '%s'",
+                        family, config.getTable()), "Add the column family to the table")
+          .withConfigProperty(HBaseSinkConfig.FAMILY_RULES);
+      }
+    }
+  }
+
+  /**
+   * Creates the table, pre-split at the configured or derived split keys, if it does not exist.
+   */
+  static void createIfMissing(HBaseSinkSettings settings) throws IOException {
+    TableName tableName = TableName.valueOf(settings.getTable());
+    try (HBaseConnections.Lease lease = HBaseConnections.acquire(settings.createConfiguration());
+         Admin admin = lease.getConnection().getAdmin()) {
+      if (admin.tableExists(tableName)) {
+        return;
+      }
+      HTableDescriptor descriptor = new HTableDescriptor(tableName);
+      descriptor.addFamily(createFamily(settings, settings.getConstantFamily()));
+      FamilyRouter router = FamilyRouter.parse(settings.getFamilyRules());
+      if (router != null) {
+        for (String family : router.getFamilies()) {
+          if (!descriptor.hasFamily(Bytes.toBytes(family))) {
+            descriptor.addFamily(createFamily(settings, Bytes.toBytes(family)));
+          }
+        }
+      }
+
+      byte[][] splitKeys = settings.getSplitKeys();
+      LOG.info("Creating HBase table '{}' with {} regions", tableName, splitKeys.length + 1);
+      try {
+        if (splitKeys.length == 0) {
+          admin.createTable(descriptor);
+        } else {
+          admin.createTable(descriptor, splitKeys);
+        }
+      } catch (TableExistsException e) {
+        // Created concurrently by another run.
+        LOG.debug("HBase table '{}' was created concurrently", tableName);
+      }
+    }
+  }
+
+  private static HColumnDescriptor createFamily(HBaseSinkSettings settings, byte[] name) {
+    HColumnDescriptor family = new HColumnDescriptor(name);
+    family.setCompressionType(settings.getCompression());
+    family.setBloomFilterType(settings.getBloomFilter());
+    return family;
+  }
+}
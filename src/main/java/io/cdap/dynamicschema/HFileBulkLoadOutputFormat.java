@@ -0,0 +1,396 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.hbase.regionserver.BloomType;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.zookeeper.ZKUtil;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Output format writing mutations as HFiles to be bulk loaded into an HBase table.
+ *
+ * Every task buffers the cells of the {@link Put}s it receives and writes one HFile per column family and per
+ * region of the target table. Whenever the buffer is full its cells are sorted and spilled to a run file, and the
+ * runs are merged when the task ends, so that a task never writes more than one file per family and region and,
+ * like direct writes, the last write of a cell wins. Compression, bloom filter and block size of the files follow
+ * the column family settings of the table. Committed files are laid out as {@code <output dir>/<family>/<file>},
+ * ready for {@link LoadIncrementalHFiles}.
+ */
+public class HFileBulkLoadOutputFormat extends FileOutputFormat<NullWritable, Mutation> {
+
+  /**
+   * Number of bytes of cells buffered by a task before they are sorted and written out.
+   */
+  public static final String BUFFER_SIZE = "dynhbase.bulkload.buffer.size";
+
+  private static final long DEFAULT_BUFFER_SIZE = 128L * 1024 * 1024;
+
+  /**
+   * Directory of the run files of a task, under its work directory. Column families never start with a dot.
+   */
+  private static final String SPILL_DIR = ".spill";
+
+  @Override
+  public RecordWriter<NullWritable, Mutation> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = HBaseConfiguration.create(context.getConfiguration());
+    String quorum = conf.get(TableOutputFormat.QUORUM_ADDRESS);
+    if (quorum != null) {
+      ZKUtil.applyClusterKeyToConf(conf, quorum);
+    }
+    TableName tableName = TableName.valueOf(conf.get(TableOutputFormat.OUTPUT_TABLE));
+
+    byte[][] startKeys;
+    HTableDescriptor descriptor;
+    try (HBaseConnections.Lease lease = HBaseConnections.acquire(conf);
+         RegionLocator locator = lease.getConnection().getRegionLocator(tableName);
+         Admin admin = lease.getConnection().getAdmin()) {
+      startKeys = locator.getStartKeys();
+      descriptor = admin.getTableDescriptor(tableName);
+    }
+
+    Path workPath = ((FileOutputCommitter) getOutputCommitter(context)).getWorkPath();
+    String prefix = context.getTaskAttemptID().getTaskID().toString();
+    return new HFileRecordWriter(conf, workPath, prefix, startKeys, descriptor,
+                                 conf.getLong(BUFFER_SIZE, DEFAULT_BUFFER_SIZE));
+  }
+
+  /**
+   * Sorts cells and drops all but the last written of the cells sharing a key, as HBase keeps the last write.
+   */
+  static void sortLastWins(List<KeyValue> cells) {
+    // The sort is stable, cells of equal keys stay in write order.
+    Collections.sort(cells, KeyValue.COMPARATOR);
+    int kept = 0;
+    for (int i = 0; i < cells.size(); ++i) {
+      if (kept > 0 && KeyValue.COMPARATOR.compare(cells.get(kept - 1), cells.get(i)) == 0) {
+        cells.set(kept - 1, cells.get(i));
+      } else {
+        cells.set(kept++, cells.get(i));
+      }
+    }
+    cells.subList(kept, cells.size()).clear();
+  }
+
+  /**
+   * Sets the number of files {@link LoadIncrementalHFiles} accepts per region and family to load a directory.
+   *
+   * Every task writes at most one file per family and region, so a directory written by more tasks than the
+   * default limit of 32 cannot be loaded otherwise.
+   *
+   * @param conf configuration of the load.
+   * @param dir output directory of the run, laid out as {@code <dir>/<family>/<file>}.
+   */
+  public static void configureLoad(Configuration conf, Path dir) throws IOException {
+    FileSystem fs = dir.getFileSystem(conf);
+    if (!fs.exists(dir)) {
+      return;
+    }
+    int maxFiles = conf.getInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, 32);
+    for (FileStatus family : fs.listStatus(dir)) {
+      if (family.isDirectory()) {
+        maxFiles = Math.max(maxFiles, fs.listStatus(family.getPath()).length);
+      }
+    }
+    conf.setInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, maxFiles);
+  }
+
+  /**
+   * Buffers cells and writes them as sorted HFiles split at region boundaries.
+   */
+  static final class HFileRecordWriter extends RecordWriter<NullWritable, Mutation> {
+    private final Configuration conf;
+    private final FileSystem fs;
+    private final Path workPath;
+    private final String prefix;
+    private final byte[][] startKeys;
+    private final HTableDescriptor descriptor;
+    private final long bufferSize;
+    private final byte[] now;
+    private final List<KeyValue> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long buffered;
+    private int files;
+
+    HFileRecordWriter(Configuration conf, Path workPath, String prefix, byte[][] startKeys,
+                      HTableDescriptor descriptor, long bufferSize) throws IOException {
+      this.conf = conf;
+      this.fs = workPath.getFileSystem(conf);
+      this.workPath = workPath;
+      this.prefix = prefix;
+      this.startKeys = startKeys;
+      this.descriptor = descriptor;
+      this.bufferSize = bufferSize;
+      this.now = Bytes.toBytes(System.currentTimeMillis());
+    }
+
+    @Override
+    public void write(NullWritable key, Mutation value) throws IOException {
+      if (!(value instanceof Put)) {
+        throw new IOException("Bulk load output only supports Put mutations, found " + value.getClass().getName());
+      }
+      for (List<Cell> cells : value.getFamilyCellMap().values()) {
+        for (Cell cell : cells) {
+          KeyValue kv = cell instanceof KeyValue ? (KeyValue) cell : KeyValueUtil.copyToNewKeyValue(cell);
+          kv.updateLatestStamp(now);
+          buffer.add(kv);
+          buffered += kv.getLength();
+        }
+      }
+      if (buffered >= bufferSize) {
+        spill();
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      if (runs.isEmpty()) {
+        sortLastWins(buffer);
+        Iterator<KeyValue> cells = buffer.iterator();
+        writeFiles(() -> cells.hasNext() ? cells.next() : null);
+        buffer.clear();
+        return;
+      }
+      try {
+        spill();
+        try (MergedRuns merged = new MergedRuns(fs, runs)) {
+          writeFiles(merged);
+        }
+      } finally {
+        fs.delete(new Path(workPath, SPILL_DIR), true);
+      }
+    }
+
+    /**
+     * Sorts the buffered cells and writes them to a new run file.
+     */
+    private void spill() throws IOException {
+      if (buffer.isEmpty()) {
+        return;
+      }
+      sortLastWins(buffer);
+      Path run = new Path(new Path(workPath, SPILL_DIR), String.format("%s-%05d", prefix, runs.size()));
+      try (DataOutputStream out = fs.create(run)) {
+        out.writeInt(buffer.size());
+        for (KeyValue kv : buffer) {
+          KeyValue.write(kv, out);
+        }
+      }
+      runs.add(run);
+      buffer.clear();
+      buffered = 0;
+    }
+
+    /**
+     * Writes sorted cells out, one file per family and region.
+     */
+    private void writeFiles(SortedCells cells) throws IOException {
+      Map<byte[], StoreFile.Writer> writers = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      int region = -1;
+      try {
+        for (KeyValue kv = cells.next(); kv != null; kv = cells.next()) {
+          if (region < 0) {
+            region = regionOf(kv.getRowArray(), kv.getRowOffset(), kv.getRowLength());
+          }
+          // Cells are sorted, so the region only moves forward.
+          while (region + 1 < startKeys.length
+            && Bytes.compareTo(kv.getRowArray(), kv.getRowOffset(), kv.getRowLength(),
+                               startKeys[region + 1], 0, startKeys[region + 1].length) >= 0) {
+            closeAll(writers);
+            region++;
+          }
+          byte[] family = Bytes.copy(kv.getFamilyArray(), kv.getFamilyOffset(), kv.getFamilyLength());
+          StoreFile.Writer writer = writers.get(family);
+          if (writer == null) {
+            writer = createWriter(family);
+            writers.put(family, writer);
+          }
+          writer.append(kv);
+        }
+      } finally {
+        closeAll(writers);
+      }
+    }
+
+    private int regionOf(byte[] row, int offset, int length) {
+      int region = 0;
+      while (region + 1 < startKeys.length
+        && Bytes.compareTo(row, offset, length, startKeys[region + 1], 0, startKeys[region + 1].length) >= 0) {
+        region++;
+      }
+      return region;
+    }
+
+    private StoreFile.Writer createWriter(byte[] family) throws IOException {
+      HColumnDescriptor column = descriptor.getFamily(family);
+      if (column == null) {
+        throw new IOException(String.format("Column family '%s' does not exist in table '%s'",
+                                            Bytes.toString(family), descriptor.getNameAsString()));
+      }
+      Path path = new Path(new Path(workPath, Bytes.toString(family)), String.format("%s-%05d", prefix, files++));
+      HFileContextBuilder context = new HFileContextBuilder()
+        .withCompression(column.getCompressionType())
+        .withBlockSize(column.getBlocksize())
+        .withDataBlockEncoding(column.getDataBlockEncoding());
+      BloomType bloomType = column.getBloomFilterType();
+      return new StoreFile.WriterBuilder(conf, new CacheConfig(conf), fs)
+        .withFilePath(path)
+        .withComparator(KeyValue.COMPARATOR)
+        .withBloomType(bloomType == null ? BloomType.NONE : bloomType)
+        .withFileContext(context.build())
+        .build();
+    }
+
+    private void closeAll(Map<byte[], StoreFile.Writer> writers) throws IOException {
+      for (StoreFile.Writer writer : writers.values()) {
+        writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, now);
+        writer.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(prefix));
+        writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+        writer.appendFileInfo(StoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+        writer.appendTrackedTimestampsToMetadata();
+        writer.close();
+      }
+      writers.clear();
+    }
+  }
+
+  /**
+   * Sequence of sorted cells.
+   */
+  private interface SortedCells {
+    /**
+     * @return next cell, null at the end of the sequence.
+     */
+    KeyValue next() throws IOException;
+  }
+
+  /**
+   * Sorted cells of run files merged into a single sorted sequence.
+   *
+   * Runs are read in parallel, of the cells sharing a key the one of the latest run is kept, as within a run.
+   */
+  private static final class MergedRuns implements SortedCells, Closeable {
+    private final PriorityQueue<Run> heads = new PriorityQueue<>(11, (a, b) -> {
+      int compare = KeyValue.COMPARATOR.compare(a.current, b.current);
+      return compare != 0 ? compare : Integer.compare(b.index, a.index);
+    });
+    private final List<Run> runs = new ArrayList<>();
+    private KeyValue previous;
+
+    MergedRuns(FileSystem fs, List<Path> paths) throws IOException {
+      try {
+        for (int i = 0; i < paths.size(); ++i) {
+          Run run = new Run(i, new DataInputStream(fs.open(paths.get(i))));
+          runs.add(run);
+          if (run.advance()) {
+            heads.add(run);
+          }
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    /**
+     * @return next cell whose key differs from the previous one, null once all runs are read.
+     */
+    @Override
+    public KeyValue next() throws IOException {
+      while (!heads.isEmpty()) {
+        Run head = heads.poll();
+        KeyValue kv = head.current;
+        if (head.advance()) {
+          heads.add(head);
+        }
+        if (previous == null || KeyValue.COMPARATOR.compare(previous, kv) != 0) {
+          previous = kv;
+          return kv;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (Run run : runs) {
+        run.in.close();
+      }
+    }
+
+    /**
+     * Run file being read.
+     */
+    private static final class Run {
+      private final int index;
+      private final DataInputStream in;
+      private int remaining;
+      private KeyValue current;
+
+      Run(int index, DataInputStream in) throws IOException {
+        this.index = index;
+        this.in = in;
+        this.remaining = in.readInt();
+      }
+
+      boolean advance() throws IOException {
+        if (remaining == 0) {
+          return false;
+        }
+        remaining--;
+        current = KeyValue.create(in);
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Bounded table of counters adding up increments before they are written.
+ *
+ * Increments of the same row, family and qualifier are summed in memory, so that a task writes every counter once
+ * per flush instead of once per record, and the counters of a row are written by a single increment. The table is
+ * full once it holds the configured number of distinct counters. Not thread safe.
+ */
+public final class IncrementBuffer {
+  private final int maxCounters;
+  private final Map<ByteBuffer, Row> rows = new LinkedHashMap<>();
+  private int counters;
+  private long increments;
+
+  /**
+   * @param maxCounters number of distinct counters the table holds when full.
+   */
+  public IncrementBuffer(int maxCounters) {
+    this.maxCounters = maxCounters;
+  }
+
+  /**
+   * Adds the counters of an increment to the table.
+   *
+   * @param increment to be added, the durability and attributes of the first increment of a row apply to the row.
+   * @return true if the table is full and must be flushed.
+   */
+  public boolean add(Increment increment) {
+    increments++;
+    Row row = rows.get(ByteBuffer.wrap(increment.getRow()));
+    if (row == null) {
+      row = new Row(increment);
+      rows.put(ByteBuffer.wrap(increment.getRow()), row);
+    }
+    for (Map.Entry<byte[], List<Cell>> entry : increment.getFamilyCellMap().entrySet()) {
+      NavigableMap<byte[], long[]> family = row.families.get(entry.getKey());
+      if (family == null) {
+        family = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        row.families.put(entry.getKey(), family);
+      }
+      for (Cell cell : entry.getValue()) {
+        long amount = Bytes.toLong(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+        byte[] qualifier = CellUtil.cloneQualifier(cell);
+        long[] counter = family.get(qualifier);
+        if (counter == null) {
+          family.put(qualifier, new long[] {amount});
+          counters++;
+        } else {
+          counter[0] += amount;
+        }
+      }
+    }
+    return counters >= maxCounters;
+  }
+
+  /**
+   * @return true if no counter is held.
+   */
+  public boolean isEmpty() {
+    return rows.isEmpty();
+  }
+
+  /**
+   * @return number of distinct counters held.
+   */
+  public int size() {
+    return counters;
+  }
+
+  /**
+   * @return number of increments added since the table was created.
+   */
+  public long getIncrements() {
+    return increments;
+  }
+
+  /**
+   * Empties the table.
+   *
+   * @return one increment per row, holding the sums of its counters.
+   */
+  public List<Increment> drain() {
+    List<Increment> drained = new ArrayList<>(rows.size());
+    for (Row row : rows.values()) {
+      Increment increment = new Increment(row.first.getRow());
+      increment.setDurability(row.first.getDurability());
+      for (Map.Entry<String, byte[]> attribute : row.first.getAttributesMap().entrySet()) {
+        increment.setAttribute(attribute.getKey(), attribute.getValue());
+      }
+      for (Map.Entry<byte[], NavigableMap<byte[], long[]>> family : row.families.entrySet()) {
+        for (Map.Entry<byte[], long[]> counter : family.getValue().entrySet()) {
+          increment.addColumn(family.getKey(), counter.getKey(), counter.getValue()[0]);
+        }
+      }
+      drained.add(increment);
+    }
+    rows.clear();
+    counters = 0;
+    return drained;
+  }
+
+  /**
+   * Empties the table into the HBase table, with one batch of increments.
+   *
+   * @param table to write the counters to.
+   * @return number of increments written.
+   * @throws IOException if any increment fails.
+   */
+  public int flush(Table table) throws IOException {
+    if (rows.isEmpty()) {
+      return 0;
+    }
+    List<Increment> drained = drain();
+    try {
+      table.batch(drained, new Object[drained.size()]);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing increments");
+    }
+    return drained.size();
+  }
+
+  /**
+   * Counters of a row, with the first increment of the row.
+   */
+  private static final class Row {
+    private final Increment first;
+    private final NavigableMap<byte[], NavigableMap<byte[], long[]>> families = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+    Row(Increment first) {
+      this.first = first;
+    }
+  }
+}
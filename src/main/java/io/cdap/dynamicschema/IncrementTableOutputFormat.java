@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link TableOutputFormat} adding up increments in an {@link IncrementBuffer} before writing them.
+ *
+ * The table output format and buffered mutators of HBase only accept puts and deletes, increments are written in
+ * batches through a {@link Table} instead. Counters are flushed when the configured number of distinct counters is
+ * reached, optionally on a fixed interval and when the task ends. Flush activity is reported through task counters.
+ */
+public class IncrementTableOutputFormat extends TableOutputFormat<NullWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(IncrementTableOutputFormat.class);
+
+  /**
+   * Maximum number of distinct counters added up before being written.
+   */
+  public static final String AGGREGATION_SIZE = "dynhbase.increment.aggregation.size";
+
+  @Override
+  public RecordWriter<NullWritable, Mutation> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = new Configuration(getConf());
+    int maxInFlight = conf.getInt(BufferedTableOutputFormat.MAX_IN_FLIGHT, 0);
+    if (maxInFlight > 0) {
+      conf.setInt(HConstants.HBASE_CLIENT_MAX_TOTAL_TASKS, maxInFlight);
+    }
+    return new IncrementRecordWriter(conf, TableName.valueOf(conf.get(OUTPUT_TABLE)),
+                                     conf.getInt(AGGREGATION_SIZE, 10000),
+                                     conf.getLong(BufferedTableOutputFormat.FLUSH_INTERVAL, 0L), context);
+  }
+
+  /**
+   * Writes increments added up in memory, flushing them periodically when configured.
+   */
+  private static final class IncrementRecordWriter extends RecordWriter<NullWritable, Mutation> {
+    private final Connection connection;
+    private final Table table;
+    private final IncrementBuffer buffer;
+    private final ScheduledExecutorService flusher;
+    private final AtomicReference<IOException> flushFailure = new AtomicReference<>();
+    private final Counter increments;
+    private final Counter written;
+    private final Counter flushes;
+    private final Counter flushMillis;
+    // Flushes happen on the flusher thread too, counters are only updated from the task thread.
+    private long pendingWritten;
+    private long pendingFlushes;
+    private long pendingFlushNanos;
+
+    IncrementRecordWriter(Configuration conf, TableName tableName, int aggregationSize, long flushInterval,
+                          TaskAttemptContext context) throws IOException {
+      this.connection = ConnectionFactory.createConnection(conf);
+      this.table = connection.getTable(tableName);
+      this.buffer = new IncrementBuffer(aggregationSize);
+      this.increments = context.getCounter(BufferedTableOutputFormat.COUNTER_GROUP, "Increments");
+      this.written = context.getCounter(BufferedTableOutputFormat.COUNTER_GROUP, "Aggregated increments");
+      this.flushes = context.getCounter(BufferedTableOutputFormat.COUNTER_GROUP, "Flushes");
+      this.flushMillis = context.getCounter(BufferedTableOutputFormat.COUNTER_GROUP, "Flush time (ms)");
+
+      if (flushInterval > 0) {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread thread = new Thread(r, "dynhbase-increment-flusher");
+          thread.setDaemon(true);
+          return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::periodicFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+      } else {
+        flusher = null;
+      }
+    }
+
+    @Override
+    public void write(NullWritable key, Mutation value) throws IOException {
+      if (!(value instanceof Increment)) {
+        throw new IOException("Pass an Increment, got " + value.getClass().getSimpleName());
+      }
+      checkFlushFailure();
+      synchronized (this) {
+        if (buffer.add((Increment) value)) {
+          flush();
+        }
+        increments.increment(1);
+        publishFlushMetrics();
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      try {
+        if (flusher != null) {
+          flusher.shutdown();
+        }
+        synchronized (this) {
+          flush();
+          publishFlushMetrics();
+        }
+        checkFlushFailure();
+      } finally {
+        try {
+          table.close();
+        } finally {
+          connection.close();
+        }
+      }
+    }
+
+    private void periodicFlush() {
+      try {
+        synchronized (this) {
+          flush();
+        }
+      } catch (IOException e) {
+        LOG.warn("Periodic flush of HBase increments failed", e);
+        flushFailure.compareAndSet(null, e);
+      }
+    }
+
+    private void flush() throws IOException {
+      if (buffer.isEmpty()) {
+        return;
+      }
+      long start = System.nanoTime();
+      pendingWritten += buffer.flush(table);
+      pendingFlushNanos += System.nanoTime() - start;
+      pendingFlushes++;
+    }
+
+    private void publishFlushMetrics() {
+      if (pendingFlushes > 0) {
+        written.increment(pendingWritten);
+        flushes.increment(pendingFlushes);
+        flushMillis.increment(TimeUnit.NANOSECONDS.toMillis(pendingFlushNanos));
+        pendingWritten = 0;
+        pendingFlushes = 0;
+        pendingFlushNanos = 0;
+      }
+    }
+
+    private void checkFlushFailure() throws IOException {
+      IOException failure = flushFailure.get();
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Put;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Splits puts holding too many cells or bytes into several puts of the same row.
+ *
+ * Cells are kept in order and every resulting put carries the durability and attributes of the original one.
+ * A cell larger than the byte limit is written alone in its own put. The puts of a row are applied one after the
+ * other, so a reader may see a row partially written while they are.
+ */
+public final class PutSplitter {
+  @Nullable
+  private final Integer maxCells;
+  @Nullable
+  private final Long maxBytes;
+
+  /**
+   * @param maxCells maximum number of cells of a put, null for no limit.
+   * @param maxBytes maximum number of bytes of the cells of a put, null for no limit.
+   */
+  public PutSplitter(@Nullable Integer maxCells, @Nullable Long maxBytes) {
+    this.maxCells = maxCells;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return true if puts are split by either number of cells or bytes.
+   */
+  public boolean isEnabled() {
+    return maxCells != null || maxBytes != null;
+  }
+
+  /**
+   * Splits the put if it exceeds the limits.
+   *
+   * @param put to be split.
+   * @param bytes number of bytes of the cells of the put.
+   * @return the put itself if within the limits, the puts it was split into otherwise.
+   */
+  public List<Put> split(Put put, long bytes) throws IOException {
+    if ((maxCells == null || put.size() <= maxCells) && (maxBytes == null || bytes <= maxBytes)) {
+      return Collections.singletonList(put);
+    }
+
+    List<Put> puts = new ArrayList<>();
+    Put current = null;
+    int currentCells = 0;
+    long currentBytes = 0;
+    for (List<Cell> cells : put.getFamilyCellMap().values()) {
+      for (Cell cell : cells) {
+        long length = KeyValueUtil.length(cell);
+        if (current != null && ((maxCells != null && currentCells + 1 > maxCells)
+          || (maxBytes != null && currentBytes + length > maxBytes))) {
+          puts.add(current);
+          current = null;
+        }
+        if (current == null) {
+          current = newPut(put);
+          currentCells = 0;
+          currentBytes = 0;
+        }
+        current.add(cell);
+        currentCells++;
+        currentBytes += length;
+      }
+    }
+    if (current != null) {
+      puts.add(current);
+    }
+    return puts;
+  }
+
+  private static Put newPut(Put put) {
+    Put split = new Put(put.getRow(), put.getTimeStamp());
+    split.setDurability(put.getDurability());
+    for (Map.Entry<String, byte[]> attribute : put.getAttributesMap().entrySet()) {
+      split.setAttribute(attribute.getKey(), attribute.getValue());
+    }
+    return split;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the UTF-8 encodings of dynamic column names.
+ *
+ * Dynamic column names repeat from record to record, so their encodings are kept in a least recently used
+ * map instead of being re-encoded for every record. The cached arrays are shared between puts and must not
+ * be modified. Not thread safe.
+ */
+public final class QualifierCache {
+  private static final int DEFAULT_MAX_QUALIFIERS = 4096;
+
+  private final Map<String, byte[]> qualifiers;
+  private long hits;
+  private long misses;
+
+  public QualifierCache() {
+    this(DEFAULT_MAX_QUALIFIERS);
+  }
+
+  public QualifierCache(final int maxQualifiers) {
+    this.qualifiers = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+        return size() > maxQualifiers;
+      }
+    };
+  }
+
+  /**
+   * @param qualifier name of the column.
+   * @return encoded column name, null if the name is null.
+   */
+  public byte[] get(String qualifier) {
+    if (qualifier == null) {
+      return null;
+    }
+    byte[] bytes = qualifiers.get(qualifier);
+    if (bytes == null) {
+      misses++;
+      bytes = TypedValueEncoder.toBytes(qualifier);
+      qualifiers.put(qualifier, bytes);
+    } else {
+      hits++;
+    }
+    return bytes;
+  }
+
+  /**
+   * @return number of lookups answered from the cache.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of lookups that had to encode the column name.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of column names currently cached.
+   */
+  public int size() {
+    return qualifiers.size();
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Hash;
+import org.apache.hadoop.hbase.util.MurmurHash3;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Transforms the row keys evaluated by the sink so that monotonically increasing keys are spread across regions.
+ *
+ * The transformation only depends on the key, so readers compute the stored key of a row with
+ * {@link #distribute(byte[])} and recover the evaluated key of a stored row with {@link #getOriginalKey(byte[])}.
+ * Range scans over salted keys must be issued once per bucket, with the start and stop keys prefixed by every
+ * entry of {@link #getBucketPrefixes()}.
+ *
+ * <ul>
+ *   <li>{@link Strategy#SALT}: prefixes the key with a single byte bucket, the 32-bit MurmurHash3 of the key
+ *   (seed 0) modulo the number of buckets.</li>
+ *   <li>{@link Strategy#HASH_PREFIX}: prefixes the key with the 4 byte big endian MurmurHash3 of the key.</li>
+ *   <li>{@link Strategy#REVERSE}: reverses the bytes of the key, so that the fastest changing bytes come
+ *   first.</li>
+ * </ul>
+ */
+public final class RowKeyDistributor {
+  /**
+   * Maximum number of salt buckets, the bucket being encoded in a single byte.
+   */
+  public static final int MAX_SALT_BUCKETS = 256;
+
+  /**
+   * Number of bytes of the prefix of {@link Strategy#HASH_PREFIX} keys.
+   */
+  public static final int HASH_PREFIX_LENGTH = Bytes.SIZEOF_INT;
+
+  private static final Hash HASH = MurmurHash3.getInstance();
+
+  /**
+   * How row keys are distributed.
+   */
+  public enum Strategy {
+    /**
+     * Keys are written as evaluated.
+     */
+    NONE("None"),
+
+    /**
+     * Keys are prefixed by one of a fixed number of buckets.
+     */
+    SALT("Salt"),
+
+    /**
+     * Keys are prefixed by their hash.
+     */
+    HASH_PREFIX("Hash Prefix"),
+
+    /**
+     * Keys are reversed.
+     */
+    REVERSE("Reverse");
+
+    private final String label;
+
+    Strategy(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    @Nullable
+    static Strategy fromLabel(String label) {
+      for (Strategy strategy : values()) {
+        if (strategy.label.equalsIgnoreCase(label) || strategy.name().equalsIgnoreCase(label)) {
+          return strategy;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final Strategy strategy;
+  private final int buckets;
+
+  private RowKeyDistributor(Strategy strategy, int buckets) {
+    this.strategy = strategy;
+    this.buckets = buckets;
+  }
+
+  /**
+   * @param strategy of the distribution.
+   * @param buckets number of salt buckets, only used by {@link Strategy#SALT}.
+   * @return distributor of row keys.
+   * @throws IllegalArgumentException if salting without a number of buckets in range 1-256.
+   */
+  public static RowKeyDistributor of(Strategy strategy, @Nullable Integer buckets) {
+    if (strategy == Strategy.SALT && (buckets == null || buckets < 1 || buckets > MAX_SALT_BUCKETS)) {
+      throw new IllegalArgumentException(
+        String.format("Salt buckets must be a number in range 1-%d, got %s", MAX_SALT_BUCKETS, buckets));
+    }
+    return new RowKeyDistributor(strategy, strategy == Strategy.SALT ? buckets : 0);
+  }
+
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @param key row key as evaluated.
+   * @return row key as stored, the key itself if not distributed.
+   */
+  public byte[] distribute(byte[] key) {
+    switch (strategy) {
+      case SALT: {
+        byte[] salted = new byte[key.length + 1];
+        salted[0] = (byte) getBucket(key);
+        System.arraycopy(key, 0, salted, 1, key.length);
+        return salted;
+      }
+      case HASH_PREFIX: {
+        byte[] hashed = new byte[key.length + HASH_PREFIX_LENGTH];
+        Bytes.putInt(hashed, 0, HASH.hash(key, 0, key.length, 0));
+        System.arraycopy(key, 0, hashed, HASH_PREFIX_LENGTH, key.length);
+        return hashed;
+      }
+      case REVERSE: {
+        byte[] reversed = new byte[key.length];
+        for (int i = 0; i < key.length; ++i) {
+          reversed[i] = key[key.length - 1 - i];
+        }
+        return reversed;
+      }
+      default:
+        return key;
+    }
+  }
+
+  /**
+   * @param key row key as stored.
+   * @return row key as evaluated.
+   */
+  public byte[] getOriginalKey(byte[] key) {
+    switch (strategy) {
+      case SALT:
+        return Arrays.copyOfRange(key, 1, key.length);
+      case HASH_PREFIX:
+        return Arrays.copyOfRange(key, HASH_PREFIX_LENGTH, key.length);
+      case REVERSE:
+        return distribute(key);
+      default:
+        return key;
+    }
+  }
+
+  /**
+   * @return prefixes of every salt bucket, a single empty prefix if keys are not salted.
+   */
+  public byte[][] getBucketPrefixes() {
+    if (strategy != Strategy.SALT) {
+      return new byte[][] { new byte[0] };
+    }
+    byte[][] prefixes = new byte[buckets][];
+    for (int i = 0; i < buckets; ++i) {
+      prefixes[i] = new byte[] { (byte) i };
+    }
+    return prefixes;
+  }
+
+  /**
+   * Computes the keys splitting the key space into regions that receive the same share of rows.
+   *
+   * @param regions number of regions, for salted keys at most one region per bucket and one region per bucket
+   * if null.
+   * @return split keys, empty if the distribution of the keys is not known in advance.
+   */
+  public byte[][] getSplitKeys(@Nullable Integer regions) {
+    switch (strategy) {
+      case SALT: {
+        int count = regions == null ? buckets : Math.max(1, Math.min(regions, buckets));
+        byte[][] splits = new byte[count - 1][];
+        for (int i = 1; i < count; ++i) {
+          splits[i - 1] = new byte[] { (byte) (i * buckets / count) };
+        }
+        return splits;
+      }
+      case HASH_PREFIX: {
+        int count = regions == null ? 1 : Math.max(1, regions);
+        byte[][] splits = new byte[count - 1][];
+        for (int i = 1; i < count; ++i) {
+          // Hashes are compared as unsigned bytes, split the unsigned 32-bit range evenly.
+          splits[i - 1] = Bytes.toBytes((int) ((1L << Integer.SIZE) * i / count));
+        }
+        return splits;
+      }
+      default:
+        return new byte[0][];
+    }
+  }
+
+  private int getBucket(byte[] key) {
+    return (HASH.hash(key, 0, key.length, 0) & Integer.MAX_VALUE) % buckets;
+  }
+}
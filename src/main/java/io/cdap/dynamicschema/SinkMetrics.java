@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.dynamicschema.api.EncodingCache;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Metrics of a sink task, accumulated locally and published to the stage {@link Metrics} periodically.
+ *
+ * For every record the sink reports the time spent evaluating the row key and column family, generating the
+ * mutation and emitting it, along with the size of the mutation. Totals are published as counters. Distributions
+ * are published as histograms made of one counter per bucket, named {@code <histogram>.le.<bound>} for the number
+ * of records at most at the bound and {@code <histogram>.le.inf} for the rest. Nothing is published per record,
+ * so the cost per record is a few additions.
+ *
+ * Published metrics:
+ * <ul>
+ *   <li>{@code cells}: cells written, and the {@code cells.per.record} histogram.</li>
+ *   <li>{@code dynamic.columns}: cells written for map entries and array records.</li>
+ *   <li>{@code dynamic.columns.cardinality}: gauge of distinct dynamic column names held by the qualifier
+ *   cache, capped by the size of the cache.</li>
+ *   <li>{@code mutation.bytes}: bytes of row keys, qualifiers and values written, and the
+ *   {@code mutation.bytes.per.record} histogram.</li>
+ *   <li>{@code rowkey.latency.us}, {@code put.latency.us} and {@code emit.latency.us}: histograms and total
+ *   ({@code .total}) of the time in microseconds spent evaluating the row key and column family, generating
+ *   the mutation and emitting it.</li>
+ *   <li>{@code qualifier.cache.hits} and {@code qualifier.cache.misses}.</li>
+ *   <li>{@code family.cache.hits} and {@code family.cache.misses}, when the column family is an expression.</li>
+ * </ul>
+ *
+ * An instance must not be shared between threads.
+ */
+public final class SinkMetrics {
+  private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final long NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+  private static final long[] LATENCY_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+  private static final long[] CELL_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+  private static final long[] BYTE_BOUNDS = {64, 128, 256, 512, 1024, 4096, 16384, 65536, 262144, 1048576};
+
+  private final Metrics metrics;
+  @Nullable
+  private final QualifierCache qualifiers;
+  @Nullable
+  private final EncodingCache families;
+
+  // Latencies are recorded in nanoseconds and published in microseconds, stages often take less than one.
+  private final Histogram rowKeyLatency = new Histogram("rowkey.latency.us", LATENCY_BOUNDS, NANOS_PER_MICRO);
+  private final Histogram putLatency = new Histogram("put.latency.us", LATENCY_BOUNDS, NANOS_PER_MICRO);
+  private final Histogram emitLatency = new Histogram("emit.latency.us", LATENCY_BOUNDS, NANOS_PER_MICRO);
+  private final Histogram cellsPerRecord = new Histogram("cells.per.record", CELL_BOUNDS, 1);
+  private final Histogram bytesPerMutation = new Histogram("mutation.bytes.per.record", BYTE_BOUNDS, 1);
+
+  private long cells;
+  private long dynamicColumns;
+  private long bytes;
+  private long qualifierHits;
+  private long qualifierMisses;
+  private long familyHits;
+  private long familyMisses;
+  private long lastFlush;
+
+  public SinkMetrics(Metrics metrics, @Nullable QualifierCache qualifiers) {
+    this(metrics, qualifiers, null);
+  }
+
+  public SinkMetrics(Metrics metrics, @Nullable QualifierCache qualifiers, @Nullable EncodingCache families) {
+    this.metrics = metrics;
+    this.qualifiers = qualifiers;
+    this.families = families;
+    this.lastFlush = System.nanoTime();
+  }
+
+  /**
+   * Records the metrics of a record written by the sink.
+   *
+   * @param start {@link System#nanoTime()} when the sink started processing the record.
+   * @param keyed {@link System#nanoTime()} when the row key and column family were evaluated.
+   * @param generated {@link System#nanoTime()} when the mutation was generated.
+   * @param emitted {@link System#nanoTime()} when the mutation was emitted.
+   * @param cells number of cells in the mutation.
+   * @param dynamicColumns number of cells written for map entries and array records.
+   * @param bytes number of bytes of row keys, qualifiers and values in the mutation.
+   */
+  public void record(long start, long keyed, long generated, long emitted, int cells, int dynamicColumns,
+                     long bytes) {
+    rowKeyLatency.add(keyed - start);
+    putLatency.add(generated - keyed);
+    emitLatency.add(emitted - generated);
+    cellsPerRecord.add(cells);
+    bytesPerMutation.add(bytes);
+    this.cells += cells;
+    this.dynamicColumns += dynamicColumns;
+    this.bytes += bytes;
+
+    if (emitted - lastFlush >= FLUSH_INTERVAL_NANOS) {
+      flush();
+      lastFlush = emitted;
+    }
+  }
+
+  /**
+   * Publishes the metrics accumulated since the last flush.
+   */
+  public void flush() {
+    count(metrics, "cells", cells);
+    count(metrics, "dynamic.columns", dynamicColumns);
+    count(metrics, "mutation.bytes", bytes);
+    cells = 0;
+    dynamicColumns = 0;
+    bytes = 0;
+
+    rowKeyLatency.flush(metrics);
+    putLatency.flush(metrics);
+    emitLatency.flush(metrics);
+    cellsPerRecord.flush(metrics);
+    bytesPerMutation.flush(metrics);
+
+    if (qualifiers != null) {
+      count(metrics, "qualifier.cache.hits", qualifiers.getHits() - qualifierHits);
+      count(metrics, "qualifier.cache.misses", qualifiers.getMisses() - qualifierMisses);
+      qualifierHits = qualifiers.getHits();
+      qualifierMisses = qualifiers.getMisses();
+      metrics.gauge("dynamic.columns.cardinality", qualifiers.size());
+    }
+    if (families != null) {
+      count(metrics, "family.cache.hits", families.getHits() - familyHits);
+      count(metrics, "family.cache.misses", families.getMisses() - familyMisses);
+      familyHits = families.getHits();
+      familyMisses = families.getMisses();
+    }
+  }
+
+  private static void count(Metrics metrics, String name, long delta) {
+    while (delta > 0) {
+      int increment = (int) Math.min(Integer.MAX_VALUE, delta);
+      metrics.count(name, increment);
+      delta -= increment;
+    }
+  }
+
+  /**
+   * Histogram with fixed bucket bounds, published as one counter per bucket.
+   *
+   * Values are added in a finer unit than they are published in, the total is converted when published and the
+   * remainder carried over to the next flush.
+   */
+  private static final class Histogram {
+    private final long[] bounds;
+    private final long scale;
+    private final String[] names;
+    private final String total;
+    private final long[] counts;
+    private long sum;
+
+    /**
+     * @param bounds upper bounds of the buckets, in the published unit.
+     * @param scale number of added units per published unit.
+     */
+    Histogram(String name, long[] bounds, long scale) {
+      this.bounds = new long[bounds.length];
+      this.scale = scale;
+      this.names = new String[bounds.length + 1];
+      for (int i = 0; i < bounds.length; ++i) {
+        this.bounds[i] = bounds[i] * scale;
+        names[i] = name + ".le." + bounds[i];
+      }
+      names[bounds.length] = name + ".le.inf";
+      this.total = name + ".total";
+      this.counts = new long[bounds.length + 1];
+    }
+
+    void add(long value) {
+      int i = 0;
+      while (i < bounds.length && value > bounds[i]) {
+        i++;
+      }
+      counts[i]++;
+      sum += value;
+    }
+
+    void flush(Metrics metrics) {
+      for (int i = 0; i < counts.length; ++i) {
+        count(metrics, names[i], counts[i]);
+        counts[i] = 0;
+      }
+      count(metrics, total, sum / scale);
+      sum %= scale;
+    }
+  }
+}
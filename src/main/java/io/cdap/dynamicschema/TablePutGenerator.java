@@ -20,88 +20,178 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.dynamicschema.api.ColumnVisitor;
 import io.cdap.dynamicschema.api.Getable;
 import io.cdap.dynamicschema.api.GetableException;
-import io.cdap.dynamicschema.api.StructuredRecordVisitor;
+import io.cdap.dynamicschema.api.PrimitiveStructuredRecordVisitor;
 import io.cdap.dynamicschema.api.VisitorException;
 
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Generate CDAP Table puts.
  */
-public class TablePutGenerator implements StructuredRecordVisitor, Getable<Put> {
-  private final Put put;
+public class TablePutGenerator implements PrimitiveStructuredRecordVisitor, ColumnVisitor, Getable<Put> {
+  private Put put;
+
+  /**
+   * Encodings of column names shared across records, null to encode every name.
+   */
+  @Nullable
+  private final QualifierCache qualifiers;
+
+  /**
+   * Number of dynamic columns added to the put.
+   */
+  private int dynamicColumns;
 
   public TablePutGenerator(byte[] rowkey) {
-    put = new Put(rowkey);
+    this(rowkey, null);
+  }
+
+  public TablePutGenerator(byte[] rowkey, @Nullable QualifierCache qualifiers) {
+    this(qualifiers);
+    reset(rowkey);
+  }
+
+  /**
+   * Creates a generator to be reused across records, {@link #reset(byte[])} must be called before every record.
+   */
+  public TablePutGenerator(@Nullable QualifierCache qualifiers) {
+    this.qualifiers = qualifiers;
   }
 
-  public boolean visit(int depth, String name, Schema.Field field, StructuredRecord value) {
+  /**
+   * Starts generating a new put.
+   *
+   * @param rowkey of the put.
+   */
+  public void reset(byte[] rowkey) {
+    this.put = new Put(rowkey);
+    this.dynamicColumns = 0;
+  }
+
+  public boolean visit(int depth, String name, Schema.Field field, StructuredRecord value) throws VisitorException {
     if (depth > 0) {
       // It's a sub-record.
       int size = value.getSchema().getFields().size();
       if (size  == 2) {
         String fld = value.get("field");
         String val = value.get("value");
-        put.add(fld, val);
+        put.add(qualifier(fld), TypedValueEncoder.toBytes(val));
       } else {
         String fld = value.get("field");
         String val = value.get("value");
         String type = value.get("type");
-        put.add(fld, val);
+        put.add(qualifier(fld), TypedValueEncoder.encode(type, val));
       }
     }
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, String value) throws VisitorException {
-    put.add(name, Bytes.toBytes(value));
+    put.add(column(name), TypedValueEncoder.toBytes(value));
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Integer value) throws VisitorException {
-    put.add(name, Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitInt(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Float value) throws VisitorException {
-    put.add(name, Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitFloat(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Double value) throws VisitorException {
-    put.add(name, Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitDouble(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Boolean value) throws VisitorException {
-    put.add(name, Bytes.toBytes(value));
-    return true;
+    return value == null ? visit(depth, name, field) : visitBoolean(depth, name, field, value);
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Long value) throws VisitorException {
-    put.add(name, Bytes.toBytes(value));
+    return value == null ? visit(depth, name, field) : visitLong(depth, name, field, value);
+  }
+
+  public boolean visitInt(int depth, String name, Schema.Field field, int value) throws VisitorException {
+    put.add(column(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitFloat(int depth, String name, Schema.Field field, float value) throws VisitorException {
+    put.add(column(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitDouble(int depth, String name, Schema.Field field, double value) throws VisitorException {
+    put.add(column(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitBoolean(int depth, String name, Schema.Field field, boolean value) throws VisitorException {
+    put.add(column(name), Bytes.toBytes(value));
+    return true;
+  }
+
+  public boolean visitLong(int depth, String name, Schema.Field field, long value) throws VisitorException {
+    put.add(column(name), Bytes.toBytes(value));
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, Map<String, String> value) throws VisitorException {
     for (Map.Entry<String, String> entry : value.entrySet()) {
-      put.add(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      put.add(qualifier(entry.getKey()), TypedValueEncoder.toBytes(entry.getValue()));
     }
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field, byte[] value) throws VisitorException {
-    put.add(name, value);
+    put.add(column(name), value);
     return true;
   }
 
   public boolean visit(int depth, String name, Schema.Field field) throws VisitorException {
-    put.add(name, (byte[]) null);
+    put.add(column(name), (byte[]) null);
+    return true;
+  }
+
+  public boolean visit(byte[] qualifier, byte[] value) throws VisitorException {
+    put.add(qualifier, value);
+    return true;
+  }
+
+  public boolean visit(String qualifier, String value, String type) throws VisitorException {
+    put.add(qualifier(qualifier), TypedValueEncoder.encode(type, value));
     return true;
   }
 
+  public boolean visitDynamic(String name, byte[] qualifier, byte[] value, String type) throws VisitorException {
+    dynamicColumns++;
+    put.add(qualifier, value);
+    return true;
+  }
+
+  /**
+   * @return number of cells written for map entries and array records.
+   */
+  public int getDynamicColumns() {
+    return dynamicColumns;
+  }
+
+  private byte[] qualifier(String name) {
+    dynamicColumns++;
+    return column(name);
+  }
+
+  /**
+   * @return encoded column name, from the cache if there is one.
+   */
+  private byte[] column(String name) {
+    return qualifiers == null ? TypedValueEncoder.toBytes(name) : qualifiers.get(name);
+  }
+
   public Put get() throws GetableException {
     return put;
   }
@@ -16,11 +16,13 @@
 
 package io.cdap.dynamicschema;
 
+import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
+import io.cdap.dynamicschema.api.CompositeRowKey;
 import io.cdap.dynamicschema.api.Expression;
 import io.cdap.dynamicschema.api.ExpressionException;
 import io.cdap.dynamicschema.api.ObserverException;
@@ -31,6 +33,7 @@ import io.cdap.plugin.common.IdUtils;
 import io.cdap.plugin.common.ReferencePluginConfig;
 
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Table Sink plugin configuration.
@@ -38,6 +41,8 @@ import java.util.List;
 public class TableSinkConfig extends ReferencePluginConfig {
   public static final String TABLE = "table";
   public static final String ROW_KEY = "rowkey";
+  public static final String ROW_KEY_FIELDS = "rowkeyFields";
+  public static final String PARALLEL_THRESHOLD = "parallelThreshold";
 
   @Name(TABLE)
   @Description("Name of table")
@@ -45,20 +50,39 @@ public class TableSinkConfig extends ReferencePluginConfig {
   private final String table;
 
   @Name(ROW_KEY)
-  @Description("Expression to specify row key")
+  @Description("Expression to specify row key. Not used when row key fields are specified.")
+  @Nullable
   @Macro
   private final String rowkey;
 
+  @Name(ROW_KEY_FIELDS)
+  @Description("Comma separated list of 'field:encoding' building a binary row key, in key order, instead of the " +
+    "row key expression. Encodings are 'long', 'int', 'ordered_long', 'ordered_int' and 'string'.")
+  @Nullable
+  @Macro
+  private final String rowkeyFields;
+
+  @Name(PARALLEL_THRESHOLD)
+  @Description("Minimum number of entries of a map or array field for its dynamic columns to be encoded in " +
+    "parallel, for records carrying very large maps or arrays. If not set, all fields are encoded serially.")
+  @Nullable
+  @Macro
+  private final Integer parallelThreshold;
+
   public TableSinkConfig(String referenceName, String table, String rowkey) {
     super(referenceName);
     this.table = table;
     this.rowkey = rowkey;
+    this.rowkeyFields = null;
+    this.parallelThreshold = null;
   }
 
   private TableSinkConfig(Builder builder) {
     super(builder.referenceName);
     table = builder.table;
     rowkey = builder.rowkey;
+    rowkeyFields = builder.rowkeyFields;
+    parallelThreshold = builder.parallelThreshold;
   }
 
   public static Builder builder() {
@@ -69,7 +93,9 @@ public class TableSinkConfig extends ReferencePluginConfig {
     return new Builder()
       .setReferenceName(copy.referenceName)
       .setTable(copy.table)
-      .setRowkey(copy.rowkey);
+      .setRowkey(copy.rowkey)
+      .setRowkeyFields(copy.rowkeyFields)
+      .setParallelThreshold(copy.parallelThreshold);
   }
 
   public void validate(FailureCollector failureCollector, Schema inputSchema) {
@@ -79,23 +105,43 @@ public class TableSinkConfig extends ReferencePluginConfig {
       failureCollector.addFailure(e.getMessage(), null)
         .withConfigProperty(Constants.Reference.REFERENCE_NAME);
     }
+    if (parallelThreshold != null && parallelThreshold <= 0) {
+      failureCollector.addFailure("Parallel encoding threshold must be a positive number of entries", null)
+        .withConfigProperty(PARALLEL_THRESHOLD);
+    }
     try {
       DynamicSchemaValidator dcv = new DynamicSchemaValidator();
       SchemaObserver so = new SchemaObserver(dcv);
       so.traverse(inputSchema);
       dcv.validate();
 
-      validateRowKey(failureCollector, inputSchema);
+      if (Strings.isNullOrEmpty(rowkeyFields) && !containsMacro(ROW_KEY_FIELDS)) {
+        validateRowKey(failureCollector, inputSchema);
+      } else {
+        validateRowKeyFields(failureCollector, inputSchema);
+      }
     } catch (ValidationException | ObserverException e) {
       failureCollector.addFailure("Invalid input schema: " + e.getMessage(),
                                   "Ensure input schema is valid dynamic schema");
     }
   }
 
+  private void validateRowKeyFields(FailureCollector failureCollector, Schema inputSchema) {
+    if (containsMacro(ROW_KEY_FIELDS)) {
+      return;
+    }
+    CompositeRowKey.validate(rowkeyFields, inputSchema, failureCollector, ROW_KEY_FIELDS);
+  }
+
   private void validateRowKey(FailureCollector failureCollector, Schema inputSchema) {
     if (containsMacro(ROW_KEY) && rowkey == null) {
       return;
     }
+    if (Strings.isNullOrEmpty(rowkey)) {
+      failureCollector.addFailure("Row key is not specified", "Specify a row key expression or row key fields")
+        .withConfigProperty(ROW_KEY);
+      return;
+    }
     // Compile Row Key Expression and make sure it's ok.
     Expression rowKeyExpression;
     try {
@@ -134,6 +180,21 @@ public class TableSinkConfig extends ReferencePluginConfig {
     }
   }
 
+  /**
+   * @return binary row key built from the row key fields, null if the row key is an expression.
+   */
+  @Nullable
+  public CompositeRowKey getCompositeRowKey() {
+    if (Strings.isNullOrEmpty(rowkeyFields)) {
+      return null;
+    }
+    try {
+      return CompositeRowKey.parse(rowkeyFields);
+    } catch (ExpressionException e) {
+      throw new IllegalStateException("Failed to parse 'rowkeyFields'", e);
+    }
+  }
+
   public Expression getRowKeyExpression() {
     try {
       return new Expression(rowkey);
@@ -146,10 +207,17 @@ public class TableSinkConfig extends ReferencePluginConfig {
     return table;
   }
 
+  @Nullable
+  public Integer getParallelThreshold() {
+    return parallelThreshold;
+  }
+
   public static final class Builder {
     private String referenceName;
     private String table;
     private String rowkey;
+    private String rowkeyFields;
+    private Integer parallelThreshold;
 
     private Builder() {
     }
@@ -169,6 +237,16 @@ public class TableSinkConfig extends ReferencePluginConfig {
       return this;
     }
 
+    public Builder setRowkeyFields(String val) {
+      rowkeyFields = val;
+      return this;
+    }
+
+    public Builder setParallelThreshold(Integer val) {
+      parallelThreshold = val;
+      return this;
+    }
+
     public TableSinkConfig build() {
       return new TableSinkConfig(this);
     }
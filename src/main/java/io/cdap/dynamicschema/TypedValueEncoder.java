@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import io.cdap.dynamicschema.api.VisitorException;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes the string value of a dynamic column into the HBase {@link Bytes} encoding of its declared type.
+ *
+ * Values of dynamic columns without a type, or with type 'string', are written as UTF-8 strings.
+ */
+public final class TypedValueEncoder {
+  private static final String UTF_8 = "UTF-8";
+
+  /**
+   * Types that can be specified in the 'type' field of a dynamic record.
+   */
+  private enum ValueType {
+    STRING {
+      @Override
+      byte[] encode(String value) {
+        return toBytes(value);
+      }
+    },
+    INT {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(Integer.parseInt(value.trim()));
+      }
+    },
+    LONG {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(Long.parseLong(value.trim()));
+      }
+    },
+    SHORT {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(Short.parseShort(value.trim()));
+      }
+    },
+    FLOAT {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(Float.parseFloat(value));
+      }
+    },
+    DOUBLE {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(Double.parseDouble(value));
+      }
+    },
+    BOOLEAN {
+      @Override
+      byte[] encode(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("true")) {
+          return Bytes.toBytes(true);
+        } else if (trimmed.equalsIgnoreCase("false")) {
+          return Bytes.toBytes(false);
+        }
+        throw new IllegalArgumentException("'" + value + "' is not a boolean");
+      }
+    },
+    BYTES {
+      @Override
+      byte[] encode(String value) {
+        // Same escaped form as used by the HBase shell, e.g. \x00\x01.
+        return Bytes.toBytesBinary(value);
+      }
+    },
+    DECIMAL {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(new BigDecimal(value.trim()));
+      }
+    },
+    TIMESTAMP {
+      @Override
+      byte[] encode(String value) {
+        return Bytes.toBytes(parseTimestamp(value));
+      }
+    };
+
+    abstract byte[] encode(String value);
+  }
+
+  private static final Map<String, ValueType> TYPES = new HashMap<>();
+
+  static {
+    for (ValueType type : ValueType.values()) {
+      TYPES.put(type.name().toLowerCase(Locale.ROOT), type);
+    }
+    TYPES.put("integer", ValueType.INT);
+    TYPES.put("bool", ValueType.BOOLEAN);
+  }
+
+  private TypedValueEncoder() {
+  }
+
+  /**
+   * Encodes the value of a dynamic column.
+   *
+   * @param type declared type of the value, null if none was declared.
+   * @param value string representation of the value.
+   * @return encoded value, null if the value is null.
+   * @throws VisitorException if the type is not supported or the value cannot be parsed as the type.
+   */
+  @Nullable
+  public static byte[] encode(@Nullable String type, @Nullable String value) throws VisitorException {
+    if (value == null) {
+      return null;
+    }
+    if (type == null) {
+      return toBytes(value);
+    }
+
+    ValueType valueType = TYPES.get(type);
+    if (valueType == null) {
+      valueType = TYPES.get(type.trim().toLowerCase(Locale.ROOT));
+      if (valueType == null) {
+        throw new VisitorException(String.format("Dynamic field type '%s' is not supported", type));
+      }
+    }
+
+    try {
+      return valueType.encode(value);
+    } catch (IllegalArgumentException e) {
+      // NumberFormatException is an IllegalArgumentException.
+      throw new VisitorException(
+        String.format("Unable to write value '%s' as type '%s': %s", value, type, e.getMessage()));
+    }
+  }
+
+  /**
+   * @param value epoch milliseconds or ISO-8601 instant.
+   * @return epoch milliseconds of the value.
+   * @throws IllegalArgumentException if the value is neither.
+   */
+  public static long parseTimestamp(String value) {
+    String trimmed = value.trim();
+    try {
+      return Long.parseLong(trimmed);
+    } catch (NumberFormatException e) {
+      try {
+        return Instant.parse(trimmed).toEpochMilli();
+      } catch (DateTimeParseException pe) {
+        throw new IllegalArgumentException("'" + value + "' is neither epoch milliseconds nor an ISO-8601 instant");
+      }
+    }
+  }
+
+  /**
+   * @param type declared type of a dynamic column, null if none was declared.
+   * @return canonical name of the type, 'string' if none was declared, null if the type is not supported.
+   */
+  @Nullable
+  public static String canonicalType(@Nullable String type) {
+    if (type == null) {
+      return "string";
+    }
+    ValueType valueType = TYPES.get(type);
+    if (valueType == null) {
+      valueType = TYPES.get(type.trim().toLowerCase(Locale.ROOT));
+    }
+    return valueType == null ? null : valueType.name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Encodes a string as UTF-8.
+   *
+   * HBase {@code Bytes.toBytes(String)} encodes through {@code String.getBytes(Charset)}, which on Java 8 creates a
+   * new charset encoder on every call. Encoding by charset name reuses the encoder the JDK caches per thread.
+   *
+   * @param value to be encoded.
+   * @return UTF-8 bytes of the value, null if the value is null.
+   */
+  @Nullable
+  public static byte[] toBytes(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return value.getBytes(UTF_8);
+    } catch (UnsupportedEncodingException e) {
+      // Every JVM supports UTF-8.
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.api;
+
+import javax.annotation.Nullable;
+
+/**
+ * Visitor for columns resolved by a compiled write plan.
+ *
+ * Unlike {@link StructuredRecordVisitor}, the schema has already been resolved when these methods are
+ * called, static columns arrive with their qualifier and value encoded and dynamic columns arrive as the
+ * raw strings carried by the map or array field.
+ */
+public interface ColumnVisitor {
+  /**
+   * Visits a column derived from a field of the record schema.
+   *
+   * @param qualifier encoded column qualifier.
+   * @param value encoded column value, null if the field has no value.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visit(byte[] qualifier, @Nullable byte[] value) throws VisitorException;
+
+  /**
+   * Visits a column derived from an entry of a map field or a record of an array field.
+   *
+   * @param qualifier name of the column.
+   * @param value value of the column.
+   * @param type type of the value, null when the dynamic field does not specify one.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visit(String qualifier, String value, @Nullable String type) throws VisitorException;
+
+  /**
+   * Visits a column derived from an entry of a map field or a record of an array field, whose qualifier and
+   * value were already encoded.
+   *
+   * @param name name of the column.
+   * @param qualifier encoded column qualifier.
+   * @param value encoded column value.
+   * @param type type of the value, null when the dynamic field does not specify one.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visitDynamic(String name, byte[] qualifier, @Nullable byte[] value, @Nullable String type)
+    throws VisitorException;
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.etl.api.FailureCollector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Binary row key made of record fields, each written with its own encoding.
+ *
+ * The key is specified as a comma separated list of {@code field:encoding} components, in key order, for example
+ * {@code tenant:string,ts:ordered_long}. Supported encodings:
+ * <ul>
+ *   <li>{@code long}: 8 bytes big endian, as written by {@code Bytes.toBytes(long)}.</li>
+ *   <li>{@code int}: 4 bytes big endian, as written by {@code Bytes.toBytes(int)}.</li>
+ *   <li>{@code ordered_long} and {@code ordered_int}: same as {@code long} and {@code int} with the sign bit
+ *   flipped, so that negative values sort before positive ones.</li>
+ *   <li>{@code string}: UTF-8 bytes, followed by a 0x00 separator unless it is the last component. Strings must
+ *   not contain U+0000. This is the default when the encoding is omitted.</li>
+ * </ul>
+ *
+ * Keys are built directly into a buffer reused across records, so an instance must not be shared between threads.
+ */
+public final class CompositeRowKey {
+  private static final byte SEPARATOR = 0;
+
+  private final String spec;
+  private final Component[] components;
+  private byte[] buffer = new byte[64];
+
+  private CompositeRowKey(String spec, Component[] components) {
+    this.spec = spec;
+    this.components = components;
+  }
+
+  /**
+   * Parses a row key specification.
+   *
+   * @param spec comma separated {@code field:encoding} components.
+   * @return {@link CompositeRowKey} of the specification.
+   * @throws ExpressionException if the specification is empty or names an unsupported encoding.
+   */
+  public static CompositeRowKey parse(String spec) throws ExpressionException {
+    List<Component> components = new ArrayList<>();
+    for (String part : spec.split(",")) {
+      part = part.trim();
+      if (part.isEmpty()) {
+        continue;
+      }
+      int colon = part.lastIndexOf(':');
+      String field = colon < 0 ? part : part.substring(0, colon).trim();
+      String encoding = colon < 0 ? Encoding.STRING.name() : part.substring(colon + 1).trim();
+      if (field.isEmpty()) {
+        throw new ExpressionException(String.format("Row key component '%s' has no field name", part));
+      }
+      try {
+        components.add(new Component(field, Encoding.valueOf(encoding.toUpperCase(Locale.ROOT))));
+      } catch (IllegalArgumentException e) {
+        throw new ExpressionException(
+          String.format("Row key component '%s' has unsupported encoding '%s', must be one of %s",
+                        part, encoding, Arrays.toString(Encoding.values()).toLowerCase(Locale.ROOT)));
+      }
+    }
+    if (components.isEmpty()) {
+      throw new ExpressionException(String.format("Row key fields '%s' do not name any field", spec));
+    }
+    return new CompositeRowKey(spec, components.toArray(new Component[0]));
+  }
+
+  /**
+   * Validates a row key specification against the input schema.
+   *
+   * @param spec comma separated {@code field:encoding} components.
+   * @param inputSchema schema of the records the key is built from.
+   * @param collector to report failures to.
+   * @param property name of the config property holding the specification.
+   */
+  public static void validate(String spec, Schema inputSchema, FailureCollector collector, String property) {
+    CompositeRowKey compositeRowKey;
+    try {
+      compositeRowKey = parse(spec);
+    } catch (ExpressionException e) {
+      collector.addFailure("Error in specifying row key fields: " + e.getMessage(),
+                           "Row key fields must be a comma separated list of 'field:encoding'")
+        .withConfigProperty(property);
+      return;
+    }
+    for (Component component : compositeRowKey.components) {
+      Schema.Field field = inputSchema.getField(component.field);
+      if (field == null) {
+        collector.addFailure(String.format("Row key field '%s' is not present in input schema", component.field), null)
+          .withConfigProperty(property);
+        continue;
+      }
+      Schema schema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      if (!component.encoding.accepts(schema.getType())) {
+        collector.addFailure(
+          String.format("Row key field '%s' of type '%s' cannot be encoded as '%s'", component.field,
+                        schema.getType().name().toLowerCase(Locale.ROOT),
+                        component.encoding.name().toLowerCase(Locale.ROOT)), null)
+          .withInputSchemaField(field.getName())
+          .withConfigProperty(property);
+      }
+    }
+  }
+
+  /**
+   * @return components of the key, in key order.
+   */
+  public List<Component> getComponents() {
+    return Collections.unmodifiableList(Arrays.asList(components));
+  }
+
+  /**
+   * Builds the key of a record.
+   *
+   * @param record to build the key of.
+   * @return encoded row key.
+   * @throws ExpressionException if a field of the key is null or a string field contains U+0000.
+   */
+  public byte[] build(StructuredRecord record) throws ExpressionException {
+    int length = 0;
+    for (int i = 0; i < components.length; ++i) {
+      Component component = components[i];
+      Object value = record.get(component.field);
+      if (value == null) {
+        throw new ExpressionException(
+          String.format("Row key field '%s' of row key '%s' is null", component.field, spec));
+      }
+      switch (component.encoding) {
+        case LONG:
+          length = putLong(length, ((Number) value).longValue());
+          break;
+        case ORDERED_LONG:
+          length = putLong(length, ((Number) value).longValue() ^ Long.MIN_VALUE);
+          break;
+        case INT:
+          length = putInt(length, ((Number) value).intValue());
+          break;
+        case ORDERED_INT:
+          length = putInt(length, ((Number) value).intValue() ^ Integer.MIN_VALUE);
+          break;
+        default:
+          length = putString(length, component, (String) value);
+          if (i < components.length - 1) {
+            ensure(length + 1);
+            buffer[length++] = SEPARATOR;
+          }
+      }
+    }
+    return Arrays.copyOf(buffer, length);
+  }
+
+  private int putLong(int offset, long value) {
+    ensure(offset + Long.BYTES);
+    for (int i = Long.BYTES - 1; i >= 0; --i) {
+      buffer[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+    return offset + Long.BYTES;
+  }
+
+  private int putInt(int offset, int value) {
+    ensure(offset + Integer.BYTES);
+    for (int i = Integer.BYTES - 1; i >= 0; --i) {
+      buffer[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+    return offset + Integer.BYTES;
+  }
+
+  private int putString(int offset, Component component, String value) throws ExpressionException {
+    int length = value.length();
+    ensure(offset + length);
+    for (int i = 0; i < length; ++i) {
+      char c = value.charAt(i);
+      if (c == SEPARATOR) {
+        // The separator would end the component early, and the key would no longer sort by its fields.
+        throw new ExpressionException(
+          String.format("Row key field '%s' of row key '%s' contains U+0000", component.field, spec));
+      }
+      if (c >= 0x80) {
+        if (value.indexOf(SEPARATOR, i) >= 0) {
+          throw new ExpressionException(
+            String.format("Row key field '%s' of row key '%s' contains U+0000", component.field, spec));
+        }
+        // Leave anything but ASCII to the JDK encoder.
+        byte[] rest = value.substring(i).getBytes(StandardCharsets.UTF_8);
+        ensure(offset + rest.length);
+        System.arraycopy(rest, 0, buffer, offset, rest.length);
+        return offset + rest.length;
+      }
+      buffer[offset++] = (byte) c;
+    }
+    return offset;
+  }
+
+  private void ensure(int capacity) {
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+  }
+
+  /**
+   * Encodings of the components of a key.
+   */
+  public enum Encoding {
+    LONG(Schema.Type.LONG, Schema.Type.INT),
+    INT(Schema.Type.INT),
+    ORDERED_LONG(Schema.Type.LONG, Schema.Type.INT),
+    ORDERED_INT(Schema.Type.INT),
+    STRING(Schema.Type.STRING);
+
+    private final List<Schema.Type> types;
+
+    Encoding(Schema.Type... types) {
+      this.types = Arrays.asList(types);
+    }
+
+    /**
+     * @return true if fields of the type can be written with this encoding.
+     */
+    public boolean accepts(Schema.Type type) {
+      return types.contains(type);
+    }
+  }
+
+  /**
+   * Field of the record written into the key.
+   */
+  public static final class Component {
+    private final String field;
+    private final Encoding encoding;
+
+    Component(String field, Encoding encoding) {
+      this.field = field;
+      this.encoding = encoding;
+    }
+
+    public String getField() {
+      return field;
+    }
+
+    public Encoding getEncoding() {
+      return encoding;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.dynamicschema.TypedValueEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the encoded values of an expression, keyed by the values of the variables it reads.
+ *
+ * Meant for expressions taking few distinct values, like a column family routed by tenant, so that records
+ * sharing the same variable values skip the evaluation and the encoding of the expression. Records sharing the
+ * same value get the same byte array, which must not be modified. Expressions are assumed to only depend on
+ * the fields of the record. Records holding a bytes value in one of the variables are always evaluated.
+ *
+ * An instance must not be shared between threads.
+ */
+public final class EncodingCache {
+  private static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  /**
+   * Placeholder for variables that are not a simple field of the record, and thus not visible to the expression.
+   */
+  private static final Object ABSENT = new Object();
+
+  private final ExpressionResolver resolver;
+  private final String[] variables;
+  private final Map<Key, byte[]> encodings;
+  private final Map<String, byte[]> values;
+  private final Key probe;
+  private long hits;
+  private long misses;
+
+  private EncodingCache(Expression expression, final int maxEntries) {
+    this.resolver = ExpressionResolver.of(expression);
+    this.variables = expression.getVariables().stream().distinct().toArray(String[]::new);
+    this.encodings = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.values = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.probe = new Key(new Object[variables.length]);
+  }
+
+  /**
+   * @param expression to be cached.
+   * @return cache of the expression holding up to 1024 distinct variable values.
+   */
+  public static EncodingCache of(Expression expression) {
+    return of(expression, DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param expression to be cached.
+   * @param maxEntries maximum number of distinct variable values retained.
+   * @return cache of the expression.
+   */
+  public static EncodingCache of(Expression expression, int maxEntries) {
+    return new EncodingCache(expression, maxEntries);
+  }
+
+  /**
+   * @param record to evaluate the expression against.
+   * @return UTF-8 encoded value of the expression for the record.
+   * @throws ExpressionException if the expression fails to evaluate.
+   */
+  public byte[] get(StructuredRecord record) throws ExpressionException {
+    Object[] key = probe.values;
+    for (int i = 0; i < variables.length; ++i) {
+      Object value = RecordContext.isSimpleField(record, variables[i]) ? record.get(variables[i]) : ABSENT;
+      if (value instanceof byte[] || value instanceof ByteBuffer) {
+        // Compared by identity, every record would miss and evict the cached values.
+        misses++;
+        return intern(resolver.resolve(record));
+      }
+      key[i] = value;
+    }
+    probe.rehash();
+
+    byte[] encoded = encodings.get(probe);
+    if (encoded != null) {
+      hits++;
+      return encoded;
+    }
+    misses++;
+    encoded = intern(resolver.resolve(record));
+    encodings.put(new Key(Arrays.copyOf(key, key.length)), encoded);
+    return encoded;
+  }
+
+  /**
+   * @return number of records whose value was found in the cache.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of records whose value had to be evaluated.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of distinct variable values retained.
+   */
+  public int size() {
+    return encodings.size();
+  }
+
+  private byte[] intern(String value) {
+    byte[] encoded = values.get(value);
+    if (encoded == null) {
+      encoded = TypedValueEncoder.toBytes(value);
+      values.put(value, encoded);
+    }
+    return encoded;
+  }
+
+  /**
+   * Values of the variables of a record.
+   */
+  private static final class Key {
+    private final Object[] values;
+    private int hash;
+
+    Key(Object[] values) {
+      this.values = values;
+      rehash();
+    }
+
+    void rehash() {
+      hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(values, ((Key) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
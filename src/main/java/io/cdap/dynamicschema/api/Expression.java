@@ -17,7 +17,6 @@
 package io.cdap.dynamicschema.api;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.data.schema.Schema;
 import org.apache.commons.jexl3.JexlBuilder;
 import org.apache.commons.jexl3.JexlContext;
 import org.apache.commons.jexl3.JexlEngine;
@@ -26,7 +25,9 @@ import org.apache.commons.jexl3.JexlScript;
 import org.apache.commons.jexl3.MapContext;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,6 +36,27 @@ import java.util.Set;
  * Expression for
  */
 public class Expression {
+  /**
+   * Maximum number of compiled scripts retained across all expressions of the process.
+   */
+  private static final int SCRIPT_CACHE_SIZE = 1000;
+
+  /**
+   * Engine shared by all expressions, {@link JexlEngine} is thread safe once created.
+   */
+  private static final JexlEngine ENGINE = createEngine();
+
+  /**
+   * Compiled scripts keyed by expression text, compiled scripts are immutable and can be shared.
+   */
+  private static final Map<String, JexlScript> SCRIPTS = Collections.synchronizedMap(
+    new LinkedHashMap<String, JexlScript>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, JexlScript> eldest) {
+        return size() > SCRIPT_CACHE_SIZE;
+      }
+    });
+
   private final String condition;
   private final JexlScript script;
 
@@ -46,14 +68,24 @@ public class Expression {
 
   public Expression(String condition) throws ExpressionException {
     this.condition = condition;
+    this.script = compile(condition);
+  }
 
+  private static JexlEngine createEngine() {
     Map<String, Object> functions = new HashMap<String, Object>();
     functions.put(null, Convertors.class);
-    JexlEngine engine = new JexlBuilder().namespaces(functions)
-      .silent(false).cache(1000).strict(true).create();
+    return new JexlBuilder().namespaces(functions)
+      .silent(false).cache(0).strict(true).create();
+  }
+
+  private static JexlScript compile(String condition) throws ExpressionException {
+    JexlScript script = condition == null ? null : SCRIPTS.get(condition);
+    if (script != null) {
+      return script;
+    }
 
     try {
-      script = engine.createScript(condition);
+      script = ENGINE.createScript(condition);
     } catch (JexlException e) {
       if (e.getCause() != null) {
         throw new ExpressionException(e.getCause().getMessage());
@@ -61,6 +93,8 @@ public class Expression {
         throw new ExpressionException(e.getMessage());
       }
     }
+    SCRIPTS.put(condition, script);
+    return script;
   }
 
   public List<String> getVariables() {
@@ -73,16 +107,48 @@ public class Expression {
   }
 
   public String apply(StructuredRecord record) throws ExpressionException {
-    JexlContext ctx = new MapContext();
-    for (Schema.Field field : record.getSchema().getFields()) {
-      if(field.getSchema().isSimpleOrNullableSimple()) {
-        ctx.set(field.getName(), record.get(field.getName()));
-      }
-    }
+    // Variables are read from the record only when the script references them.
+    return execute(new RecordContext(record));
+  }
+
+  /**
+   * Evaluates the expression without converting its result, numeric expressions evaluate to numbers.
+   *
+   * @param record to evaluate the expression against.
+   * @return result of the expression, null if it evaluates to null.
+   */
+  public Object evaluate(StructuredRecord record) throws ExpressionException {
+    return evaluate(new RecordContext(record));
+  }
+
+  /**
+   * @return the text of the expression.
+   */
+  String getCondition() {
+    return condition;
+  }
+
+  /**
+   * Evaluates an expression that does not reference any variable.
+   */
+  String applyConstant() throws ExpressionException {
+    return execute(new MapContext());
+  }
+
+  /**
+   * Converts a value to string the same way the '+' operator of an expression does.
+   */
+  static String toString(Object value) {
+    return ENGINE.getArithmetic().toString(value);
+  }
+
+  private String execute(JexlContext ctx) throws ExpressionException {
+    return (String) evaluate(ctx);
+  }
 
+  private Object evaluate(JexlContext ctx) throws ExpressionException {
     try {
-      String result = (String) script.execute(ctx);
-      return result;
+      return script.execute(ctx);
     } catch (JexlException e) {
       // Generally JexlException wraps the original exception, so it's good idea
       // to check if there is a inner exception, if there is wrap it in 'StepException'
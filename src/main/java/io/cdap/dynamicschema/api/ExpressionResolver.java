@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the value of an {@link Expression} for a record, bypassing JEXL for trivial expressions.
+ *
+ * Expressions without variables are evaluated once. Expressions that are a single field name, or a
+ * concatenation of field names and string literals using '+', read the fields directly from the record.
+ * Whenever a record holds values the fast path cannot reproduce exactly (nulls, numeric additions, fields
+ * not visible to the expression), the record is evaluated by JEXL, so results are always identical to
+ * {@link Expression#apply(StructuredRecord)}.
+ */
+public abstract class ExpressionResolver {
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+  protected final Expression expression;
+
+  private ExpressionResolver(Expression expression) {
+    this.expression = expression;
+  }
+
+  /**
+   * Creates the most specialized resolver for the expression.
+   *
+   * @param expression to be resolved.
+   * @return {@link ExpressionResolver} for the expression.
+   */
+  public static ExpressionResolver of(Expression expression) {
+    List<String> variables = expression.getVariables();
+    if (variables.isEmpty()) {
+      try {
+        return new ConstantResolver(expression, expression.applyConstant());
+      } catch (ExpressionException e) {
+        // Report the failure for every record, as JEXL evaluation would.
+        return new ScriptResolver(expression);
+      }
+    }
+
+    List<Object> operands = parseConcatenation(expression.getCondition(), new HashSet<>(variables));
+    if (operands == null) {
+      return new ScriptResolver(expression);
+    }
+    if (operands.size() == 1 && operands.get(0) instanceof Field) {
+      return new FieldResolver(expression, ((Field) operands.get(0)).name);
+    }
+    return new ConcatResolver(expression, operands);
+  }
+
+  /**
+   * @param record to resolve the expression against.
+   * @return value of the expression for the record.
+   */
+  public abstract String resolve(StructuredRecord record) throws ExpressionException;
+
+  /**
+   * @return true if the expression evaluates to the same value for every record.
+   */
+  public boolean isConstant() {
+    return false;
+  }
+
+  /**
+   * @return name of the field the expression is made of, null if the expression is not a single field.
+   */
+  @Nullable
+  public String getField() {
+    return null;
+  }
+
+  /**
+   * Splits text of the form {@code a + "-" + b} into field names and literals.
+   *
+   * @return operands, {@link Field} for field names and {@link String} for literals, or null if the
+   * expression is not such a concatenation.
+   */
+  private static List<Object> parseConcatenation(String text, Set<String> variables) {
+    List<Object> operands = new ArrayList<>();
+    int start = 0;
+    char quote = 0;
+    for (int i = 0; i <= text.length(); ++i) {
+      char c = i < text.length() ? text.charAt(i) : '+';
+      if (quote != 0) {
+        if (c == '\\') {
+          return null;
+        }
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '+') {
+        Object operand = parseOperand(text.substring(start, i).trim(), variables);
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+        start = i + 1;
+      }
+    }
+    return quote == 0 ? operands : null;
+  }
+
+  private static Object parseOperand(String token, Set<String> variables) {
+    if (token.length() >= 2) {
+      char first = token.charAt(0);
+      if ((first == '"' || first == '\'') && token.charAt(token.length() - 1) == first
+        && token.indexOf(first, 1) == token.length() - 1) {
+        return token.substring(1, token.length() - 1);
+      }
+    }
+    if (IDENTIFIER.matcher(token).matches() && variables.contains(token)) {
+      return new Field(token);
+    }
+    return null;
+  }
+
+  /**
+   * Reads a field the same way the expression would, null if JEXL must evaluate the record.
+   */
+  private static Object read(StructuredRecord record, String name) {
+    return RecordContext.isSimpleField(record, name) ? record.get(name) : null;
+  }
+
+  /**
+   * Field name operand of a concatenation.
+   */
+  private static final class Field {
+    private final String name;
+
+    Field(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Resolver of expressions without variables.
+   */
+  private static final class ConstantResolver extends ExpressionResolver {
+    private final String value;
+
+    ConstantResolver(Expression expression, String value) {
+      super(expression);
+      this.value = value;
+    }
+
+    @Override
+    public String resolve(StructuredRecord record) {
+      return value;
+    }
+
+    @Override
+    public boolean isConstant() {
+      return true;
+    }
+  }
+
+  /**
+   * Resolver of expressions naming a single field.
+   */
+  private static final class FieldResolver extends ExpressionResolver {
+    private final String name;
+
+    FieldResolver(Expression expression, String name) {
+      super(expression);
+      this.name = name;
+    }
+
+    @Override
+    public String resolve(StructuredRecord record) throws ExpressionException {
+      Object value = read(record, name);
+      return value instanceof String ? (String) value : expression.apply(record);
+    }
+
+    @Override
+    public String getField() {
+      return name;
+    }
+  }
+
+  /**
+   * Resolver of concatenations of fields and string literals.
+   */
+  private static final class ConcatResolver extends ExpressionResolver {
+    private final Object[] operands;
+
+    ConcatResolver(Expression expression, List<Object> operands) {
+      super(expression);
+      this.operands = operands.toArray();
+    }
+
+    @Override
+    public String resolve(StructuredRecord record) throws ExpressionException {
+      StringBuilder builder = null;
+      Object first = value(record, operands[0]);
+      for (int i = 1; i < operands.length; ++i) {
+        Object value = value(record, operands[i]);
+        if (first == null || value == null) {
+          return expression.apply(record);
+        }
+        if (builder == null) {
+          // '+' only concatenates when one of the operands is a string, JEXL adds numbers otherwise.
+          if (!(first instanceof String) && !(value instanceof String)) {
+            return expression.apply(record);
+          }
+          builder = new StringBuilder(Expression.toString(first));
+        }
+        builder.append(Expression.toString(value));
+      }
+      return builder == null ? expression.apply(record) : builder.toString();
+    }
+
+    private static Object value(StructuredRecord record, Object operand) {
+      return operand instanceof Field ? read(record, ((Field) operand).name) : operand;
+    }
+  }
+
+  /**
+   * Resolver evaluating the expression with JEXL.
+   */
+  private static final class ScriptResolver extends ExpressionResolver {
+    ScriptResolver(Expression expression) {
+      super(expression);
+    }
+
+    @Override
+    public String resolve(StructuredRecord record) throws ExpressionException {
+      return expression.apply(record);
+    }
+  }
+}
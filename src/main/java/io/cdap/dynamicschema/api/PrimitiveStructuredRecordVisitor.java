@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+
+/**
+ * {@link StructuredRecordVisitor} receiving numeric and boolean fields as primitives.
+ *
+ * When traversing with a visitor implementing this interface, the observer calls the primitive method
+ * for fields holding a value and {@link StructuredRecordVisitor#visit(int, String, Schema.Field)} for
+ * fields whose value is null, instead of the boxed overloads.
+ */
+public interface PrimitiveStructuredRecordVisitor extends StructuredRecordVisitor {
+  /**
+   * Visits all fields that are of int type.
+   *
+   * @param depth Specifies the depth in the record evaluation.
+   * @param name Name of the field.
+   * @param field {@link Schema.Field} of the field.
+   * @param value value extracted from {@link StructuredRecord} for that named field.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visitInt(int depth, String name, Schema.Field field, int value) throws VisitorException;
+
+  /**
+   * Visits all fields that are of long type.
+   *
+   * @param depth Specifies the depth in the record evaluation.
+   * @param name Name of the field.
+   * @param field {@link Schema.Field} of the field.
+   * @param value value extracted from {@link StructuredRecord} for that named field.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visitLong(int depth, String name, Schema.Field field, long value) throws VisitorException;
+
+  /**
+   * Visits all fields that are of float type.
+   *
+   * @param depth Specifies the depth in the record evaluation.
+   * @param name Name of the field.
+   * @param field {@link Schema.Field} of the field.
+   * @param value value extracted from {@link StructuredRecord} for that named field.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visitFloat(int depth, String name, Schema.Field field, float value) throws VisitorException;
+
+  /**
+   * Visits all fields that are of double type.
+   *
+   * @param depth Specifies the depth in the record evaluation.
+   * @param name Name of the field.
+   * @param field {@link Schema.Field} of the field.
+   * @param value value extracted from {@link StructuredRecord} for that named field.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visitDouble(int depth, String name, Schema.Field field, double value) throws VisitorException;
+
+  /**
+   * Visits all fields that are of boolean type.
+   *
+   * @param depth Specifies the depth in the record evaluation.
+   * @param name Name of the field.
+   * @param field {@link Schema.Field} of the field.
+   * @param value value extracted from {@link StructuredRecord} for that named field.
+   * @return true to continue, false to terminate visiting further.
+   */
+  boolean visitBoolean(int depth, String name, Schema.Field field, boolean value) throws VisitorException;
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.commons.jexl3.JexlContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link JexlContext} reading variables directly from a {@link StructuredRecord}.
+ *
+ * Only fields of simple types are visible to expressions. Nothing is copied up front, the script pulls
+ * the fields it references, so the cost of binding does not depend on the width of the record.
+ * Variables assigned by the script are kept aside and shadow the fields of the record.
+ */
+final class RecordContext implements JexlContext {
+  private final StructuredRecord record;
+  private Map<String, Object> assigned;
+
+  RecordContext(StructuredRecord record) {
+    this.record = record;
+  }
+
+  @Override
+  public Object get(String name) {
+    if (assigned != null && assigned.containsKey(name)) {
+      return assigned.get(name);
+    }
+    return isSimpleField(record, name) ? record.get(name) : null;
+  }
+
+  @Override
+  public void set(String name, Object value) {
+    if (assigned == null) {
+      assigned = new HashMap<>();
+    }
+    assigned.put(name, value);
+  }
+
+  @Override
+  public boolean has(String name) {
+    return (assigned != null && assigned.containsKey(name)) || isSimpleField(record, name);
+  }
+
+  /**
+   * @return true if the record has a field of simple type with the given name.
+   */
+  static boolean isSimpleField(StructuredRecord record, String name) {
+    Schema.Field field = record.getSchema().getField(name);
+    return field != null && field.getSchema().isSimpleOrNullableSimple();
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.observer;
+
+import io.cdap.dynamicschema.api.VisitorException;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encodes the dynamic columns of large map and array fields in parallel on a {@link ForkJoinPool}.
+ *
+ * The entries of a field are split into chunks, every chunk encodes the qualifiers and values of its entries
+ * into arrays indexed like the entries, and the encoded columns are then handed to the visitor in order on the
+ * calling thread. The resulting mutation is the same as the one of a serial traversal.
+ */
+public final class ParallelEncoding {
+  /**
+   * Smallest number of entries encoded by a single task.
+   */
+  private static final int MIN_CHUNK = 256;
+
+  private final int threshold;
+  private final ForkJoinPool pool;
+
+  /**
+   * Encodes on the common fork-join pool.
+   *
+   * @param threshold minimum number of entries of a field for it to be encoded in parallel.
+   */
+  public ParallelEncoding(int threshold) {
+    this(threshold, ForkJoinPool.commonPool());
+  }
+
+  public ParallelEncoding(int threshold, ForkJoinPool pool) {
+    this.threshold = threshold;
+    this.pool = pool;
+  }
+
+  /**
+   * @return minimum number of entries of a field for it to be encoded in parallel.
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  boolean applies(int entries) {
+    return entries >= threshold;
+  }
+
+  /**
+   * Encodes the entries into the qualifier and value arrays.
+   *
+   * @param entries to be encoded.
+   * @param encoder of a single entry, called concurrently.
+   * @param qualifiers receiving the encoded qualifier of every entry.
+   * @param values receiving the encoded value of every entry.
+   * @throws VisitorException if any entry fails to encode.
+   */
+  <T> void encode(List<T> entries, EntryEncoder<T> encoder, byte[][] qualifiers, byte[][] values)
+    throws VisitorException {
+    int chunk = Math.max(MIN_CHUNK, entries.size() / (pool.getParallelism() * 4) + 1);
+    try {
+      pool.invoke(new EncodeTask<>(entries, encoder, qualifiers, values, 0, entries.size(), chunk));
+    } catch (EncodeException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Encodes a single entry of a map or array field, must be thread safe.
+   */
+  interface EntryEncoder<T> {
+    void encode(T entry, int index, byte[][] qualifiers, byte[][] values) throws VisitorException;
+  }
+
+  /**
+   * Encodes a range of entries, splitting it in halves until it is no larger than a chunk.
+   */
+  private static final class EncodeTask<T> extends RecursiveAction {
+    private final List<T> entries;
+    private final EntryEncoder<T> encoder;
+    private final byte[][] qualifiers;
+    private final byte[][] values;
+    private final int from;
+    private final int to;
+    private final int chunk;
+
+    EncodeTask(List<T> entries, EntryEncoder<T> encoder, byte[][] qualifiers, byte[][] values,
+               int from, int to, int chunk) {
+      this.entries = entries;
+      this.encoder = encoder;
+      this.qualifiers = qualifiers;
+      this.values = values;
+      this.from = from;
+      this.to = to;
+      this.chunk = chunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= chunk) {
+        try {
+          for (int i = from; i < to; ++i) {
+            encoder.encode(entries.get(i), i, qualifiers, values);
+          }
+        } catch (VisitorException e) {
+          throw new EncodeException(e);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new EncodeTask<>(entries, encoder, qualifiers, values, from, middle, chunk),
+                new EncodeTask<>(entries, encoder, qualifiers, values, middle, to, chunk));
+    }
+  }
+
+  /**
+   * Carries a {@link VisitorException} out of a fork-join task.
+   */
+  private static final class EncodeException extends RuntimeException {
+    EncodeException(VisitorException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized VisitorException getCause() {
+      return (VisitorException) super.getCause();
+    }
+  }
+}
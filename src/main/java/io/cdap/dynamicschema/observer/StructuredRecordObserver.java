@@ -20,6 +20,7 @@ import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.dynamicschema.api.Observer;
 import io.cdap.dynamicschema.api.ObserverException;
+import io.cdap.dynamicschema.api.PrimitiveStructuredRecordVisitor;
 import io.cdap.dynamicschema.api.StructuredRecordVisitor;
 import io.cdap.dynamicschema.api.VisitorException;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -34,8 +35,15 @@ import java.util.Map;
 public final class StructuredRecordObserver implements Observer<StructuredRecord> {
   private final StructuredRecordVisitor visitor;
 
+  /**
+   * Same as visitor when it accepts primitive values, null otherwise.
+   */
+  private final PrimitiveStructuredRecordVisitor primitive;
+
   public StructuredRecordObserver(StructuredRecordVisitor visitor) {
     this.visitor = visitor;
+    this.primitive = visitor instanceof PrimitiveStructuredRecordVisitor ?
+      (PrimitiveStructuredRecordVisitor) visitor : null;
   }
 
   public void traverse(StructuredRecord record) throws ObserverException {
@@ -61,31 +69,51 @@ public final class StructuredRecordObserver implements Observer<StructuredRecord
         boolean exit = false;
         switch(type) {
           case INT:
-            if(!visitor.visit(depth, name, field, (Integer) record.get(name))) {
+            if (primitive != null) {
+              Object value = record.get(name);
+              exit = value == null ? !visitor.visit(depth, name, field)
+                : !primitive.visitInt(depth, name, field, (Integer) value);
+            } else if(!visitor.visit(depth, name, field, (Integer) record.get(name))) {
               exit = true;
             }
             break;
 
           case FLOAT:
-            if(!visitor.visit(depth, name, field, (Float) record.get(name))) {
+            if (primitive != null) {
+              Object value = record.get(name);
+              exit = value == null ? !visitor.visit(depth, name, field)
+                : !primitive.visitFloat(depth, name, field, (Float) value);
+            } else if(!visitor.visit(depth, name, field, (Float) record.get(name))) {
               exit = true;
             }
             break;
 
           case DOUBLE:
-            if(!visitor.visit(depth, name, field, (Double) record.get(name))) {
+            if (primitive != null) {
+              Object value = record.get(name);
+              exit = value == null ? !visitor.visit(depth, name, field)
+                : !primitive.visitDouble(depth, name, field, (Double) value);
+            } else if(!visitor.visit(depth, name, field, (Double) record.get(name))) {
               exit = true;
             }
             break;
 
           case LONG:
-            if(!visitor.visit(depth, name, field, (Long) record.get(name))) {
+            if (primitive != null) {
+              Object value = record.get(name);
+              exit = value == null ? !visitor.visit(depth, name, field)
+                : !primitive.visitLong(depth, name, field, (Long) value);
+            } else if(!visitor.visit(depth, name, field, (Long) record.get(name))) {
               exit = true;
             }
             break;
 
           case BOOLEAN:
-            if(!visitor.visit(depth, name, field, (Boolean) record.get(name))) {
+            if (primitive != null) {
+              Object value = record.get(name);
+              exit = value == null ? !visitor.visit(depth, name, field)
+                : !primitive.visitBoolean(depth, name, field, (Boolean) value);
+            } else if(!visitor.visit(depth, name, field, (Boolean) record.get(name))) {
               exit = true;
             }
             break;
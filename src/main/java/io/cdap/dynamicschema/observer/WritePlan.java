@@ -0,0 +1,328 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.observer;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.dynamicschema.TypedValueEncoder;
+import io.cdap.dynamicschema.api.ColumnVisitor;
+import io.cdap.dynamicschema.api.ObserverException;
+import io.cdap.dynamicschema.api.VisitorException;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Write plan compiled once for a record {@link Schema}.
+ *
+ * Resolves nullability and type of every field and encodes every qualifier up front, so that
+ * traversing a record is a flat loop over the fields without any schema introspection. Produces
+ * the same columns as {@link StructuredRecordObserver}.
+ */
+public final class WritePlan {
+  private final Schema schema;
+  private final FieldWriter[] writers;
+
+  private WritePlan(Schema schema, FieldWriter[] writers) {
+    this.schema = schema;
+    this.writers = writers;
+  }
+
+  /**
+   * Compiles the write plan for records of the given schema.
+   *
+   * @param schema of the records.
+   * @return compiled {@link WritePlan}.
+   */
+  public static WritePlan compile(Schema schema) {
+    List<Schema.Field> fields = schema.getFields();
+    FieldWriter[] writers = new FieldWriter[fields.size()];
+    for (int i = 0; i < writers.length; ++i) {
+      writers[i] = compile(fields.get(i));
+    }
+    return new WritePlan(schema, writers);
+  }
+
+  private static FieldWriter compile(Schema.Field field) {
+    Schema schema = getNonNullable(field.getSchema());
+    String name = field.getName();
+    switch (schema.getType()) {
+      case INT:
+        return new ValueWriter(name, value -> Bytes.toBytes((Integer) value));
+      case FLOAT:
+        return new ValueWriter(name, value -> Bytes.toBytes((Float) value));
+      case DOUBLE:
+        return new ValueWriter(name, value -> Bytes.toBytes((Double) value));
+      case LONG:
+        return new ValueWriter(name, value -> Bytes.toBytes((Long) value));
+      case BOOLEAN:
+        return new ValueWriter(name, value -> Bytes.toBytes((Boolean) value));
+      case STRING:
+        return new ValueWriter(name, value -> TypedValueEncoder.toBytes((String) value));
+      case BYTES:
+        return new ValueWriter(name, value -> value instanceof ByteBuffer ?
+          Bytes.toBytes((ByteBuffer) value) : (byte[]) value);
+      case NULL:
+        return new ValueWriter(name, value -> null);
+      case MAP:
+        return new MapWriter(name);
+      case ARRAY:
+        Schema component = getNonNullable(schema.getComponentSchema());
+        return new ArrayWriter(name, component.getType() == Schema.Type.RECORD
+          && component.getField("type") != null);
+      default:
+        return new SkipWriter(name);
+    }
+  }
+
+  private static Schema getNonNullable(Schema schema) {
+    return schema.isNullable() ? schema.getNonNullable() : schema;
+  }
+
+  /**
+   * Encodes the entries in parallel, then visits the encoded columns in order.
+   */
+  private static <T> boolean writeEncoded(List<T> entries, ParallelEncoding.EntryEncoder<T> encoder,
+                                          Function<T, String> names, Function<T, String> types,
+                                          ColumnVisitor visitor, ParallelEncoding parallel)
+    throws VisitorException {
+    byte[][] qualifiers = new byte[entries.size()][];
+    byte[][] values = new byte[entries.size()][];
+    parallel.encode(entries, encoder, qualifiers, values);
+    for (int i = 0; i < qualifiers.length; ++i) {
+      T entry = entries.get(i);
+      if (!visitor.visitDynamic(names.apply(entry), qualifiers[i], values[i], types.apply(entry))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private static byte[] encodeQualifier(@Nullable String name) {
+    return TypedValueEncoder.toBytes(name);
+  }
+
+  /**
+   * @return the schema this plan was compiled for.
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Visits all the columns of the record.
+   *
+   * @param record to be traversed, must be of the schema the plan was compiled for.
+   * @param visitor receiving the columns.
+   */
+  public void traverse(StructuredRecord record, ColumnVisitor visitor) throws ObserverException {
+    traverse(record, visitor, null);
+  }
+
+  /**
+   * Visits all the columns of the record, encoding large map and array fields in parallel.
+   *
+   * @param record to be traversed, must be of the schema the plan was compiled for.
+   * @param visitor receiving the columns, always called from the calling thread.
+   * @param parallel encoding of large fields, null to encode every field serially.
+   */
+  public void traverse(StructuredRecord record, ColumnVisitor visitor, @Nullable ParallelEncoding parallel)
+    throws ObserverException {
+    try {
+      for (FieldWriter writer : writers) {
+        if (!writer.write(record, visitor, parallel)) {
+          break;
+        }
+      }
+    } catch (VisitorException e) {
+      throw new ObserverException(e.getMessage());
+    }
+  }
+
+  /**
+   * Counts the columns {@link #traverse(StructuredRecord, ColumnVisitor)} visits for the record, without
+   * reading any value other than the sizes of map and array fields.
+   *
+   * @param record of the schema the plan was compiled for.
+   * @return number of columns of the record.
+   */
+  public int countColumns(StructuredRecord record) {
+    int count = 0;
+    for (FieldWriter writer : writers) {
+      count += writer.count(record);
+    }
+    return count;
+  }
+
+  /**
+   * Converts a field value to the bytes written for it.
+   */
+  private interface Encoder {
+    byte[] encode(Object value);
+  }
+
+  /**
+   * Writes a single field of the record.
+   */
+  private abstract static class FieldWriter {
+    protected final String name;
+
+    FieldWriter(String name) {
+      this.name = name;
+    }
+
+    abstract boolean write(StructuredRecord record, ColumnVisitor visitor,
+                           @Nullable ParallelEncoding parallel) throws VisitorException;
+
+    abstract int count(StructuredRecord record);
+  }
+
+  /**
+   * Writes a field of simple type into the column named after the field.
+   */
+  private static final class ValueWriter extends FieldWriter {
+    private final byte[] qualifier;
+    private final Encoder encoder;
+
+    ValueWriter(String name, Encoder encoder) {
+      super(name);
+      this.qualifier = Bytes.toBytes(name);
+      this.encoder = encoder;
+    }
+
+    @Override
+    boolean write(StructuredRecord record, ColumnVisitor visitor,
+                  @Nullable ParallelEncoding parallel) throws VisitorException {
+      Object value = record.get(name);
+      return visitor.visit(qualifier, value == null ? null : encoder.encode(value));
+    }
+
+    @Override
+    int count(StructuredRecord record) {
+      return 1;
+    }
+  }
+
+  /**
+   * Writes every entry of a map field as a dynamic column.
+   */
+  private static final class MapWriter extends FieldWriter {
+    private static final ParallelEncoding.EntryEncoder<Map.Entry<String, String>> ENCODER =
+      (entry, i, qualifiers, values) -> {
+        qualifiers[i] = encodeQualifier(entry.getKey());
+        values[i] = TypedValueEncoder.encode(null, entry.getValue());
+      };
+
+    MapWriter(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean write(StructuredRecord record, ColumnVisitor visitor,
+                  @Nullable ParallelEncoding parallel) throws VisitorException {
+      Map<String, String> map = record.get(name);
+      if (map == null) {
+        return true;
+      }
+      if (parallel != null && parallel.applies(map.size())) {
+        return writeEncoded(new ArrayList<>(map.entrySet()), ENCODER, Map.Entry::getKey, entry -> null,
+                            visitor, parallel);
+      }
+      for (Map.Entry<String, String> entry : map.entrySet()) {
+        if (!visitor.visit(entry.getKey(), entry.getValue(), null)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    int count(StructuredRecord record) {
+      Map<String, String> map = record.get(name);
+      return map == null ? 0 : map.size();
+    }
+  }
+
+  /**
+   * Writes every 'field', 'value' and optional 'type' record of an array field as a dynamic column.
+   */
+  private static final class ArrayWriter extends FieldWriter {
+    private final boolean typed;
+    private final ParallelEncoding.EntryEncoder<StructuredRecord> encoder;
+
+    ArrayWriter(String name, boolean typed) {
+      super(name);
+      this.typed = typed;
+      this.encoder = (r, i, qualifiers, values) -> {
+        qualifiers[i] = encodeQualifier(r.get("field"));
+        values[i] = TypedValueEncoder.encode(typed ? r.get("type") : null, r.get("value"));
+      };
+    }
+
+    @Override
+    boolean write(StructuredRecord record, ColumnVisitor visitor,
+                  @Nullable ParallelEncoding parallel) throws VisitorException {
+      List<StructuredRecord> records = record.get(name);
+      if (records == null) {
+        return true;
+      }
+      if (parallel != null && parallel.applies(records.size())) {
+        return writeEncoded(records instanceof RandomAccess ? records : new ArrayList<>(records), encoder,
+                            r -> r.get("field"), r -> typed ? r.get("type") : null, visitor, parallel);
+      }
+      for (StructuredRecord r : records) {
+        String type = typed ? r.get("type") : null;
+        if (!visitor.visit((String) r.get("field"), (String) r.get("value"), type)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    int count(StructuredRecord record) {
+      List<StructuredRecord> records = record.get(name);
+      return records == null ? 0 : records.size();
+    }
+  }
+
+  /**
+   * Ignores fields of types that are not written.
+   */
+  private static final class SkipWriter extends FieldWriter {
+    SkipWriter(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean write(StructuredRecord record, ColumnVisitor visitor, @Nullable ParallelEncoding parallel) {
+      return true;
+    }
+
+    @Override
+    int count(StructuredRecord record) {
+      return 0;
+    }
+  }
+}
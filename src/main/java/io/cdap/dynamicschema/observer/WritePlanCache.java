@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.observer;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of {@link WritePlan}s keyed by record {@link Schema}.
+ *
+ * Records flowing through a stage almost always share the same schema instance, so the last plan is
+ * checked by identity before falling back to a lookup by schema equality. Not thread safe, an
+ * instance is meant to be owned by a single task.
+ */
+public final class WritePlanCache {
+  private static final int DEFAULT_MAX_PLANS = 64;
+
+  private final Map<Schema, WritePlan> plans;
+  private Schema lastSchema;
+  private WritePlan lastPlan;
+
+  public WritePlanCache() {
+    this(DEFAULT_MAX_PLANS);
+  }
+
+  public WritePlanCache(final int maxPlans) {
+    this.plans = new LinkedHashMap<Schema, WritePlan>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Schema, WritePlan> eldest) {
+        return size() > maxPlans;
+      }
+    };
+  }
+
+  /**
+   * @param schema of the record to be written.
+   * @return {@link WritePlan} for the schema, compiled on first use.
+   */
+  public WritePlan get(Schema schema) {
+    if (schema == lastSchema) {
+      return lastPlan;
+    }
+    WritePlan plan = plans.get(schema);
+    if (plan == null) {
+      plan = WritePlan.compile(schema);
+      plans.put(schema, plan);
+    }
+    lastSchema = schema;
+    lastPlan = plan;
+    return plan;
+  }
+}
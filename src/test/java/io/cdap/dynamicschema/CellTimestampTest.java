@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.dynamicschema.api.ExpressionException;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link CellTimestamp}
+ */
+public class CellTimestampTest {
+
+  @Test
+  public void testCellTimestamp() throws Exception {
+    Schema schema = Schema.recordOf(
+      "event",
+      Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("ts", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("us", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+      Schema.Field.of("iso", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("s", "test").set("ts", 1000L).set("us", 2000000L).set("iso", "1970-01-01T00:00:03Z").build();
+    HBaseSinkConfig config = HBaseSinkConfig.builder()
+      .setReferenceName("ref")
+      .setTable("table")
+      .setRowkey("s")
+      .setFamily("'cf'")
+      .setMaxCellsPerMutation(2)
+      .setTtl(60L)
+      .build();
+
+    // Arithmetic evaluates to numbers, concatenation to strings.
+    String[] expressions = {"ts", "us", "iso", "'' + ts", "ts * 1000", "ts + 1"};
+    long[] expected = {1000L, 2000L, 3000L, 1000L, 1000000L, 1001L};
+    for (int i = 0; i < expressions.length; ++i) {
+      List<Put> puts = new ArrayList<>();
+      HBaseRecordConverter.of(HBaseSinkConfig.builder(config).setTimestamp(expressions[i]).build(), null)
+        .convert(record, puts::add);
+      Assert.assertEquals(2, puts.size());
+      for (Put put : puts) {
+        Assert.assertEquals(expressions[i], expected[i], put.getTimeStamp());
+        Assert.assertEquals(60000L, put.getTTL());
+        for (List<Cell> cells : put.getFamilyCellMap().values()) {
+          for (Cell cell : cells) {
+            Assert.assertEquals(expressions[i], expected[i], cell.getTimestamp());
+          }
+        }
+      }
+    }
+
+    // Without a timestamp, cells get the time of the region server.
+    List<Put> puts = new ArrayList<>();
+    HBaseRecordConverter.of(HBaseSinkConfig.builder(config).setTtl(null).build(), null).convert(record, puts::add);
+    Assert.assertEquals(HConstants.LATEST_TIMESTAMP, puts.get(0).getTimeStamp());
+    Assert.assertEquals(Long.MAX_VALUE, puts.get(0).getTTL());
+
+    HBaseRecordConverter converter = HBaseRecordConverter.of(HBaseSinkConfig.builder(config).setTimestamp("ts")
+                                                               .build(), null);
+    try {
+      converter.convert(StructuredRecord.builder(schema).set("s", "test").set("us", 0L).set("iso", "").build(),
+                        puts::add);
+      Assert.fail("Expected a null timestamp to fail");
+    } catch (ExpressionException e) {
+      // Expected
+    }
+  }
+}
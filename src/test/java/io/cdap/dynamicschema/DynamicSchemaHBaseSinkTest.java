@@ -20,9 +20,13 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.internal.io.ReflectionSchemaGenerator;
+import io.cdap.dynamicschema.api.ObserverException;
 import io.cdap.dynamicschema.api.ValidationException;
+import io.cdap.dynamicschema.observer.ParallelEncoding;
 import io.cdap.dynamicschema.observer.SchemaObserver;
 import io.cdap.dynamicschema.observer.StructuredRecordObserver;
+import io.cdap.dynamicschema.observer.WritePlan;
+import io.cdap.dynamicschema.observer.WritePlanCache;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Put;
 import org.junit.Assert;
@@ -103,9 +107,7 @@ public class DynamicSchemaHBaseSinkTest {
     return builder.build();
   }
 
-  @Test
-  public void testBasicDynamicSchema() throws Exception {
-    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord.class, true);
+  private StructuredRecord createGoodRecord(Schema schema) throws Exception {
     Schema node = new ReflectionSchemaGenerator().generate(GoodDynamicSchema.class);
 
     Map<String, String> m = new HashMap<String, String>();
@@ -123,7 +125,13 @@ public class DynamicSchemaHBaseSinkTest {
     builder.set("s", "test");
     builder.set("m", m);
     builder.set("l", r);
-    StructuredRecord record = builder.build();
+    return builder.build();
+  }
+
+  @Test
+  public void testBasicDynamicSchema() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord.class, true);
+    StructuredRecord record = createGoodRecord(schema);
 
     // Schema Validator iterate through individual fields to validate
     // and ensure the types are right.
@@ -147,6 +155,166 @@ public class DynamicSchemaHBaseSinkTest {
     Assert.assertNotNull(put);
   }
 
+  @Test
+  public void testWritePlanMatchesObserver() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord.class, true);
+    StructuredRecord record = createGoodRecord(schema);
+
+    byte[] key = Bytes.toBytes("A");
+    byte[] family = Bytes.toBytes("B");
+    HBasePutGenerator observed = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+    new StructuredRecordObserver(observed).traverse(record);
+    HBasePutGenerator planned = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+    WritePlanCache plans = new WritePlanCache();
+    plans.get(schema).traverse(record, planned);
+
+    PutAssertions.assertSameCells(observed.get(), planned.get());
+    Assert.assertSame(plans.get(schema), plans.get(schema));
+  }
+
+  @Test
+  public void testTypedDynamicFields() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord1.class, true);
+    Schema node = new ReflectionSchemaGenerator().generate(GoodDynamicSchema1.class);
+
+    List<StructuredRecord> r = new ArrayList<StructuredRecord>();
+    r.add(createTypedDynamicField(node, "name", "joltie", "string"));
+    r.add(createTypedDynamicField(node, "zipcode", "3423424", "long"));
+    r.add(createTypedDynamicField(node, "salary", "10.9", "DOUBLE"));
+    r.add(createTypedDynamicField(node, "active", "true", "boolean"));
+    r.add(createTypedDynamicField(node, "created", "2017-02-02T21:06:44Z", "timestamp"));
+
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("s", "test")
+      .set("m", new HashMap<String, String>())
+      .set("l", r)
+      .build();
+
+    byte[] family = Bytes.toBytes("B");
+    HBasePutGenerator generator = new HBasePutGenerator(Bytes.toBytes("A"), family, Durability.SYNC_WAL);
+    new WritePlanCache().get(schema).traverse(record, generator);
+    Put put = generator.get();
+
+    Assert.assertArrayEquals(Bytes.toBytes("joltie"), PutAssertions.value(put, family, "name"));
+    Assert.assertArrayEquals(Bytes.toBytes(3423424L), PutAssertions.value(put, family, "zipcode"));
+    Assert.assertArrayEquals(Bytes.toBytes(10.9d), PutAssertions.value(put, family, "salary"));
+    Assert.assertArrayEquals(Bytes.toBytes(true), PutAssertions.value(put, family, "active"));
+    Assert.assertArrayEquals(Bytes.toBytes(1486069604000L), PutAssertions.value(put, family, "created"));
+  }
+
+  @Test
+  public void testQualifierCache() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord.class, true);
+    StructuredRecord record = createGoodRecord(schema);
+    byte[] key = Bytes.toBytes("A");
+    byte[] family = Bytes.toBytes("B");
+
+    QualifierCache qualifiers = new QualifierCache();
+    HBasePutGenerator uncached = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+    new WritePlanCache().get(schema).traverse(record, uncached);
+    for (int i = 0; i < 2; ++i) {
+      HBasePutGenerator cached = new HBasePutGenerator(key, family, Durability.SYNC_WAL, qualifiers);
+      new WritePlanCache().get(schema).traverse(record, cached);
+      PutAssertions.assertSameCells(uncached.get(), cached.get());
+    }
+    // 3 map entries and 3 array records, encoded once.
+    Assert.assertEquals(6, qualifiers.getMisses());
+    Assert.assertEquals(6, qualifiers.getHits());
+
+    qualifiers = new QualifierCache(2);
+    byte[] a = qualifiers.get("a");
+    qualifiers.get("b");
+    Assert.assertSame(a, qualifiers.get("a"));
+    qualifiers.get("c");
+    Assert.assertEquals(2, qualifiers.size());
+    // 'b' is the least recently used and was evicted.
+    qualifiers.get("b");
+    Assert.assertEquals(4, qualifiers.getMisses());
+    Assert.assertEquals(1, qualifiers.getHits());
+  }
+
+  @Test
+  public void testReusedGenerator() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord.class, true);
+    StructuredRecord record = createGoodRecord(schema);
+    byte[] key = Bytes.toBytes("A");
+    byte[] family = Bytes.toBytes("B");
+    WritePlan plan = new WritePlanCache().get(schema);
+
+    HBasePutGenerator expected = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+    plan.traverse(record, expected);
+    Assert.assertEquals(expected.get().size(), plan.countColumns(record));
+
+    HBasePutGenerator reused = new HBasePutGenerator(Durability.SYNC_WAL, new QualifierCache());
+    Put previous = null;
+    for (int i = 0; i < 2; ++i) {
+      reused.reset(key, family, plan.countColumns(record));
+      plan.traverse(record, reused);
+      Put put = reused.get();
+      Assert.assertNotSame(previous, put);
+      Assert.assertEquals(Durability.SYNC_WAL, put.getDurability());
+      PutAssertions.assertSameCells(expected.get(), put);
+      previous = put;
+    }
+
+    // Nothing written into the sized cell list, the put stays empty.
+    reused.reset(key, family, 10);
+    Assert.assertTrue(reused.get().isEmpty());
+  }
+
+  @Test
+  public void testParallelEncoding() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord1.class, true);
+    Schema node = new ReflectionSchemaGenerator().generate(GoodDynamicSchema1.class);
+    Map<String, String> m = new HashMap<>();
+    List<StructuredRecord> l = new ArrayList<>();
+    for (int i = 0; i < 2000; ++i) {
+      m.put("map" + i, String.valueOf(i));
+      l.add(StructuredRecord.builder(node)
+              .set("field", "array" + i).set("value", String.valueOf(i)).set("type", "long").build());
+    }
+    StructuredRecord record = StructuredRecord.builder(schema).set("s", "test").set("m", m).set("l", l).build();
+    byte[] key = Bytes.toBytes("A");
+    byte[] family = Bytes.toBytes("B");
+    WritePlan plan = new WritePlanCache().get(schema);
+
+    HBasePutGenerator expected = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+    plan.traverse(record, expected);
+    for (int threshold : new int[] {1, 1000, 5000}) {
+      HBasePutGenerator actual = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+      plan.traverse(record, actual, new ParallelEncoding(threshold));
+      PutAssertions.assertSameCells(expected.get(), actual.get());
+      Assert.assertEquals(4000, actual.getDynamicColumns());
+    }
+
+    // Failures to encode an entry are reported as for serial traversals.
+    l.set(1500, StructuredRecord.builder(node).set("field", "bad").set("value", "x").set("type", "long").build());
+    record = StructuredRecord.builder(schema).set("s", "test").set("m", m).set("l", l).build();
+    try {
+      plan.traverse(record, new HBasePutGenerator(key, family, Durability.SYNC_WAL), new ParallelEncoding(1));
+      Assert.fail("Expected the 'x' long value to fail encoding");
+    } catch (ObserverException e) {
+      Assert.assertTrue(e.getMessage().contains("'x'"));
+    }
+  }
+
+  @Test(expected = ObserverException.class)
+  public void testBadTypedDynamicField() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(GoodRecord1.class, true);
+    Schema node = new ReflectionSchemaGenerator().generate(GoodDynamicSchema1.class);
+
+    List<StructuredRecord> r = new ArrayList<StructuredRecord>();
+    r.add(createTypedDynamicField(node, "zipcode", "mars ave", "long"));
+    StructuredRecord record = StructuredRecord.builder(schema).set("s", "test").set("l", r).build();
+
+    TablePutGenerator generator = new TablePutGenerator(Bytes.toBytes("A"));
+    new WritePlanCache().get(schema).traverse(record, generator);
+  }
+
+  private StructuredRecord createTypedDynamicField(Schema schema, String field, String value, String type) {
+    return StructuredRecord.builder(schema).set("field", field).set("value", value).set("type", type).build();
+  }
+
   @Test
   public void testGoodDynamicSchemas() throws Exception {
     // Test All good Schema types for dynamic schema.
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link DynamicSchemaHBaseSparkSink}
+ */
+public class DynamicSchemaHBaseSparkSinkTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))));
+
+  private static StructuredRecord createRecord(String key, int columns) {
+    Map<String, String> m = new HashMap<>();
+    for (int i = 0; i < columns; ++i) {
+      m.put("map" + i, "1");
+    }
+    return StructuredRecord.builder(SCHEMA).set("s", key).set("m", m).build();
+  }
+
+  private static HBaseSinkConfig.Builder createConfig() {
+    return HBaseSinkConfig.builder()
+      .setReferenceName("ref")
+      .setTable("table")
+      .setRowkey("s")
+      .setFamily("'cf'");
+  }
+
+  @Test
+  public void testWritePartition() throws Exception {
+    List<Mutation> mutations = new ArrayList<>();
+    BufferedMutator mutator = (BufferedMutator) Proxy.newProxyInstance(
+      getClass().getClassLoader(), new Class<?>[] {BufferedMutator.class}, (proxy, method, args) -> {
+        if (method.getName().equals("mutate") && args[0] instanceof Mutation) {
+          mutations.add((Mutation) args[0]);
+        }
+        return null;
+      });
+    HBaseRecordConverter converter = HBaseRecordConverter.of(createConfig().setMaxCellsPerMutation(100).build(),
+                                                             null);
+
+    DynamicSchemaHBaseSparkSink.PartitionWriter.write(
+      Arrays.asList(createRecord("a", 150), createRecord("b", 10)).iterator(), converter, mutator);
+    // The first record is split by the mutation limit.
+    Assert.assertEquals(3, mutations.size());
+    String[] rows = {"a", "a", "b"};
+    for (int i = 0; i < rows.length; ++i) {
+      Assert.assertTrue(mutations.get(i) instanceof Put);
+      Assert.assertArrayEquals(Bytes.toBytes(rows[i]), mutations.get(i).getRow());
+    }
+    Assert.assertEquals(151, mutations.get(0).size() + mutations.get(1).size());
+  }
+
+  @Test
+  public void testIncrementPartition() throws Exception {
+    List<List<Increment>> batches = new ArrayList<>();
+    Table table = (Table) Proxy.newProxyInstance(
+      getClass().getClassLoader(), new Class<?>[] {Table.class}, (proxy, method, args) -> {
+        if (method.getName().equals("batch") && args.length == 2) {
+          List<Increment> batch = new ArrayList<>();
+          for (Object row : (List<?>) args[0]) {
+            batch.add((Increment) row);
+          }
+          batches.add(batch);
+          return null;
+        }
+        throw new UnsupportedOperationException(method.getName());
+      });
+    HBaseRecordConverter converter = HBaseRecordConverter.of(
+      createConfig().setMutationType("Increment").setAggregationSize(2).build(), null);
+
+    // The buffer is written once it holds two counters, and again at the end of the partition.
+    DynamicSchemaHBaseSparkSink.PartitionWriter.increment(
+      Arrays.asList(createRecord("a", 1), createRecord("a", 1), createRecord("b", 1), createRecord("c", 1)).iterator(),
+      converter, table);
+    Assert.assertEquals(2, batches.size());
+    Assert.assertEquals(2, batches.get(0).size());
+    Increment a = batches.get(0).get(0);
+    Assert.assertArrayEquals(Bytes.toBytes("a"), a.getRow());
+    Assert.assertEquals(2L, Bytes.toLong(CellUtil.cloneValue(
+      a.getFamilyCellMap().get(Bytes.toBytes("cf")).get(0))));
+    Assert.assertEquals(1, batches.get(1).size());
+    Assert.assertArrayEquals(Bytes.toBytes("c"), batches.get(1).get(0).getRow());
+  }
+}
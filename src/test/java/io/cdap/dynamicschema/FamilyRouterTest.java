@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.dynamicschema.observer.ParallelEncoding;
+import io.cdap.dynamicschema.observer.WritePlan;
+import io.cdap.dynamicschema.observer.WritePlanCache;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link FamilyRouter}
+ */
+public class FamilyRouterTest {
+  private static final Schema FIELD = Schema.recordOf(
+    "field",
+    Schema.Field.of("field", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("value", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("type", Schema.of(Schema.Type.STRING)));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("l", Schema.arrayOf(FIELD)));
+
+  private static StructuredRecord createField(String field, String value, String type) {
+    return StructuredRecord.builder(FIELD).set("field", field).set("value", value).set("type", type).build();
+  }
+
+  @Test
+  public void testFamilyRouting() throws Exception {
+    Map<String, String> m = new HashMap<>();
+    m.put("map1", "1");
+    m.put("map2", "2");
+    List<StructuredRecord> l = new ArrayList<>();
+    l.add(createField("array1", "1", "long"));
+    l.add(createField("array2", "2", "string"));
+    l.add(createField("array22", "22", "string"));
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("s", "test").set("m", m).set("l", l).build();
+    HBaseSinkConfig config = HBaseSinkConfig.builder()
+      .setReferenceName("ref")
+      .setTable("table")
+      .setRowkey("s")
+      .setFamily("'cf'")
+      .setFamilyRules("prefix:map1=hot; type:LONG=cold; regex:array[0-9]{1,1}=hot")
+      .build();
+
+    List<Put> puts = new ArrayList<>();
+    HBaseRecordConverter.of(config, null).convert(record, puts::add);
+    Assert.assertEquals(1, puts.size());
+    Put put = puts.get(0);
+    Assert.assertEquals(new HashSet<>(Arrays.asList("cf", "hot", "cold")), PutAssertions.toFamilyNames(put));
+    byte[] cf = Bytes.toBytes("cf");
+    byte[] hot = Bytes.toBytes("hot");
+    Assert.assertArrayEquals(Bytes.toBytes("test"), PutAssertions.value(put, cf, "s"));
+    Assert.assertArrayEquals(Bytes.toBytes("1"), PutAssertions.value(put, hot, "map1"));
+    Assert.assertArrayEquals(Bytes.toBytes("2"), PutAssertions.value(put, cf, "map2"));
+    // The type rule comes before the name rule matching the column.
+    Assert.assertArrayEquals(Bytes.toBytes(1L), PutAssertions.value(put, Bytes.toBytes("cold"), "array1"));
+    Assert.assertArrayEquals(Bytes.toBytes("2"), PutAssertions.value(put, hot, "array2"));
+    Assert.assertArrayEquals(Bytes.toBytes("22"), PutAssertions.value(put, cf, "array22"));
+
+    // Columns encoded in parallel are routed alike.
+    WritePlan plan = new WritePlanCache().get(SCHEMA);
+    HBasePutGenerator parallel = new HBasePutGenerator(Durability.SYNC_WAL, null, FamilyRouter.parse(
+      config.getFamilyRules()));
+    parallel.reset(Bytes.toBytes("test"), cf, 0);
+    plan.traverse(record, parallel, new ParallelEncoding(1));
+    PutAssertions.assertSameCells(put, parallel.get());
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.security.User;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link HBaseConnections}
+ */
+public class HBaseConnectionsTest {
+
+  @Test
+  public void testConnectionKey() throws Exception {
+    Configuration conf = HBaseSinkSettings.createConfiguration("zk1,zk2", 2181, null);
+    Configuration other = HBaseSinkSettings.createConfiguration("zk1,zk2", 2181, "/hbase");
+    User user = User.createUserForTesting(conf, "alice", new String[0]);
+    // Settings other than the cluster do not change the key, the default parent node is the same cluster.
+    other.set("hbase.client.write.buffer", "1024");
+    Assert.assertEquals(HBaseConnections.getKey(conf, user), HBaseConnections.getKey(other, user));
+    Assert.assertNotEquals(HBaseConnections.getKey(conf, user),
+                           HBaseConnections.getKey(HBaseSinkSettings.createConfiguration("zk1,zk2", 2182, null), user));
+    Assert.assertNotEquals(HBaseConnections.getKey(conf, user),
+                           HBaseConnections.getKey(HBaseSinkSettings.createConfiguration("zk1,zk2", 2181, "/other"),
+                                                   user));
+    // Users never share a connection.
+    Assert.assertNotEquals(HBaseConnections.getKey(conf, user),
+                           HBaseConnections.getKey(conf, User.createUserForTesting(conf, "bob", new String[0])));
+
+    conf.setInt(HConstants.ZK_SESSION_TIMEOUT, 180000);
+    Configuration bounded = HBaseConnections.bound(conf);
+    Assert.assertEquals(HBaseConnections.ZK_SESSION_TIMEOUT_MS, bounded.getInt(HConstants.ZK_SESSION_TIMEOUT, 0));
+    Assert.assertEquals(HBaseConnections.CLIENT_RETRIES, bounded.getInt(HConstants.HBASE_CLIENT_RETRIES_NUMBER, 0));
+    // The configuration of the sink is left untouched.
+    Assert.assertEquals(180000, conf.getInt(HConstants.ZK_SESSION_TIMEOUT, 0));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link HBaseRecordConverter}
+ */
+public class HBaseRecordConverterTest {
+  private static final Schema FIELD = Schema.recordOf(
+    "field",
+    Schema.Field.of("field", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("value", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("type", Schema.of(Schema.Type.STRING)));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("l", Schema.arrayOf(FIELD)));
+
+  @Test
+  public void testRecordConverter() throws Exception {
+    Map<String, String> m = new HashMap<>();
+    for (int i = 0; i < 250; ++i) {
+      m.put("map" + i, String.valueOf(i));
+    }
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("s", "test").set("m", m).set("l", new ArrayList<>()).build();
+    HBaseSinkConfig config = HBaseSinkConfig.builder()
+      .setReferenceName("ref")
+      .setTable("table")
+      .setRowkey("s")
+      .setFamily("'cf'")
+      .setMaxCellsPerMutation(100)
+      .build();
+
+    // Both DynHBase sinks write the puts of the same converter, split by the mutation limits.
+    HBaseRecordConverter converter = HBaseRecordConverter.of(config, null);
+    List<Put> puts = new ArrayList<>();
+    converter.convert(record, puts::add);
+    Assert.assertEquals(3, puts.size());
+    int cells = 0;
+    for (Put put : puts) {
+      Assert.assertArrayEquals(Bytes.toBytes("test"), put.getRow());
+      Assert.assertEquals(Collections.singleton("cf"), PutAssertions.toFamilyNames(put));
+      cells += put.size();
+    }
+    Assert.assertEquals(251, cells);
+  }
+
+  @Test
+  public void testIncrement() throws Exception {
+    Map<String, String> m = new HashMap<>();
+    m.put("a", "1");
+    m.put("b", " 2 ");
+    List<StructuredRecord> l = new ArrayList<>();
+    l.add(StructuredRecord.builder(FIELD).set("field", "c").set("value", "3").set("type", "long").build());
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("s", "test").set("m", m).set("l", l).build();
+    HBaseSinkConfig config = HBaseSinkConfig.builder()
+      .setReferenceName("ref")
+      .setTable("table")
+      .setRowkey("s")
+      .setFamily("'cf'")
+      .setFamilyRules("prefix:c=counters")
+      .setMutationType("Increment")
+      .setTtl(60L)
+      .build();
+
+    // Static fields are not written, dynamic columns are counters.
+    HBaseRecordConverter converter = HBaseRecordConverter.of(config, null);
+    List<Increment> increments = new ArrayList<>();
+    converter.increment(record, increments::add);
+    Assert.assertEquals(1, increments.size());
+    Increment increment = increments.get(0);
+    Assert.assertArrayEquals(Bytes.toBytes("test"), increment.getRow());
+    Assert.assertEquals(60000L, increment.getTTL());
+    Map<String, Long> counters = new HashMap<>();
+    for (Map.Entry<byte[], List<Cell>> family : increment.getFamilyCellMap().entrySet()) {
+      for (Cell cell : family.getValue()) {
+        counters.put(Bytes.toString(family.getKey()) + ":" + Bytes.toString(CellUtil.cloneQualifier(cell)),
+                     Bytes.toLong(CellUtil.cloneValue(cell)));
+      }
+    }
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("cf:a", 1L);
+    expected.put("cf:b", 2L);
+    expected.put("counters:c", 3L);
+    Assert.assertEquals(expected, counters);
+
+    m.put("b", "2.5");
+    try {
+      converter.increment(record, increments::add);
+      Assert.fail("Expected a decimal counter to fail");
+    } catch (Exception e) {
+      // Expected
+    }
+  }
+}
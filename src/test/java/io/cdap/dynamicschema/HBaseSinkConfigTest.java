@@ -16,13 +16,20 @@
 
 package io.cdap.dynamicschema;
 
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.validation.ValidationFailure;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
+import io.cdap.dynamicschema.api.ExpressionResolver;
 import io.cdap.plugin.common.Constants;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.regionserver.BloomType;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 public class HBaseSinkConfigTest {
@@ -50,6 +57,41 @@ public class HBaseSinkConfigTest {
     Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
   }
 
+  @Test
+  public void testDurability() {
+    Assert.assertEquals(Durability.SYNC_WAL, VALID_CONFIG.getDurability());
+    Assert.assertEquals(Durability.ASYNC_WAL,
+                        HBaseSinkConfig.builder(VALID_CONFIG).setDurability("WAL Asynchronous").build()
+                          .getDurability());
+    Assert.assertEquals(Durability.FSYNC_WAL,
+                        HBaseSinkConfig.builder(VALID_CONFIG).setDurability("WAL Asynchronous & Force Disk Write")
+                          .build().getDurability());
+    Assert.assertEquals(Durability.SKIP_WAL,
+                        HBaseSinkConfig.builder(VALID_CONFIG).setDurability("Skip WAL").build().getDurability());
+  }
+
+  @Test
+  public void testSettings() throws Exception {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setTable("t")
+      .setFamily("'cf'")
+      .setDurability("Skip WAL")
+      .setOutputMode("Buffered")
+      .setWriteBufferSize(1024L)
+      .build();
+
+    HBaseSinkSettings settings = HBaseSinkSettings.of(config, ExpressionResolver.of(config.getFamilyExpression()));
+    Assert.assertEquals("t", settings.getTable());
+    Assert.assertEquals(Durability.SKIP_WAL, settings.getDurability());
+    Assert.assertEquals(HBaseSinkConfig.OutputMode.BUFFERED, settings.getOutputMode());
+    Assert.assertEquals(Long.valueOf(1024L), settings.getWriteBufferSize());
+    Assert.assertArrayEquals(Bytes.toBytes("cf"), settings.getConstantFamily());
+
+    config = HBaseSinkConfig.builder(config).setFamily("family").build();
+    settings = HBaseSinkSettings.of(config, ExpressionResolver.of(config.getFamilyExpression()));
+    Assert.assertNull(settings.getConstantFamily());
+  }
+
   @Test
   public void testValidateReference() {
     HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
@@ -155,6 +197,15 @@ public class HBaseSinkConfigTest {
     ValidationAssertions.assertValidationFailedWithStacktrace(failureCollector);
   }
 
+  @Test
+  public void testValidateNullConstantFamily() {
+    for (String family : new String[] {"null", "''"}) {
+      MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+      HBaseSinkConfig.builder(VALID_CONFIG).setFamily(family).build().validate(failureCollector, VALID_INPUT_SCHEMA);
+      ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.FAMILY);
+    }
+  }
+
   @Test
   public void testValidateWrongFamilyKeyType() {
     Schema inputSchema = Schema.recordOf(
@@ -220,4 +271,250 @@ public class HBaseSinkConfigTest {
     List<ValidationFailure> failureList = failureCollector.getValidationFailures();
     Assert.assertEquals(1, failureList.size());
   }
+
+  @Test
+  public void testValidateOutputMode() {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setOutputMode("Buffered")
+      .setWriteBufferSize(8L * 1024 * 1024)
+      .setMaxInFlight(16)
+      .setFlushInterval(1000L)
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+    Assert.assertEquals(HBaseSinkConfig.OutputMode.BUFFERED, config.getOutputMode());
+
+    config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setOutputMode("Unknown")
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.OUTPUT_MODE);
+  }
+
+  @Test
+  public void testValidateBulkLoadDir() {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setOutputMode("Bulk Load")
+      .setBulkLoadDir("/tmp/dynhbase")
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+    Assert.assertEquals(HBaseSinkConfig.OutputMode.BULK_LOAD, config.getOutputMode());
+
+    config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setOutputMode("Bulk Load")
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.BULK_LOAD_DIR);
+  }
+
+  @Test
+  public void testValidateWriteBufferSize() {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setOutputMode("Buffered")
+      .setWriteBufferSize(0L)
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.WRITE_BUFFER_SIZE);
+  }
+
+  @Test
+  public void testValidateParallelThreshold() {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setParallelThreshold(0)
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.PARALLEL_THRESHOLD);
+  }
+
+  @Test
+  public void testValidateFamilyRules() {
+    for (String rules : new String[] {"m_=metrics", "suffix:_raw=blobs", "prefix:m_=", "type:date=cold",
+      "regex:[a-=cold"}) {
+      HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+        .setFamilyRules(rules)
+        .build();
+
+      MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+      config.validate(failureCollector, VALID_INPUT_SCHEMA);
+      ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.FAMILY_RULES);
+    }
+
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setFamilyRules("prefix:m_=metrics; regex:.*_(raw|dump)=blobs; regex:metric_\\d{1,3}=metrics; type:bytes=blobs")
+      .build();
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    Assert.assertEquals(0, failureCollector.getValidationFailures().size());
+    Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("metrics", "blobs")),
+                        FamilyRouter.parse(config.getFamilyRules()).getFamilies());
+  }
+
+  @Test
+  public void testValidateTimestamp() {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("family", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("ts", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)));
+    for (String timestamp : new String[] {"ts", "'' + ts", "ts * 1000", "id"}) {
+      MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+      HBaseSinkConfig.builder(VALID_CONFIG).setTimestamp(timestamp).setTtl(3600L).build()
+        .validate(failureCollector, schema);
+      Assert.assertEquals(timestamp, 0, failureCollector.getValidationFailures().size());
+    }
+
+    for (String timestamp : new String[] {"missing", "d", "ts +"}) {
+      MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+      HBaseSinkConfig.builder(VALID_CONFIG).setTimestamp(timestamp).build().validate(failureCollector, schema);
+      ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.TIMESTAMP);
+    }
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    HBaseSinkConfig.builder(VALID_CONFIG).setTtl(0L).build().validate(failureCollector, schema);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.TTL);
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    HBaseSinkConfig.builder(VALID_CONFIG).setTtl(60L).setOutputMode("Bulk Load").setBulkLoadDir("/tmp").build()
+      .validate(failureCollector, schema);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.TTL);
+  }
+
+  @Test
+  public void testValidateMutationType() {
+    for (String mutationType : new String[] {"Put", "Increment", "increment"}) {
+      MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+      HBaseSinkConfig.builder(VALID_CONFIG).setMutationType(mutationType).setAggregationSize(100).setTtl(60L).build()
+        .validate(failureCollector, VALID_INPUT_SCHEMA);
+      Assert.assertEquals(mutationType, 0, failureCollector.getValidationFailures().size());
+    }
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    HBaseSinkConfig.builder(VALID_CONFIG).setMutationType("Append").build()
+      .validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.MUTATION_TYPE);
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    HBaseSinkConfig.builder(VALID_CONFIG).setMutationType("Increment").setAggregationSize(0).build()
+      .validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.AGGREGATION_SIZE);
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    HBaseSinkConfig.builder(VALID_CONFIG).setMutationType("Increment").setOutputMode("Bulk Load")
+      .setBulkLoadDir("/tmp").build().validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.OUTPUT_MODE);
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    HBaseSinkConfig.builder(VALID_CONFIG).setMutationType("Increment").setTimestamp("'0'").build()
+      .validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.TIMESTAMP);
+  }
+
+  @Test
+  public void testValidateMutationLimits() {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setMaxCellsPerMutation(0)
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.MAX_CELLS_PER_MUTATION);
+
+    config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setMaxBytesPerMutation(-1L)
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.MAX_BYTES_PER_MUTATION);
+  }
+
+  @Test
+  public void testValidateRowKeyDistribution() {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setRowKeyDistribution("Shuffle")
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.ROW_KEY_DISTRIBUTION);
+
+    config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setRowKeyDistribution("Salt")
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, HBaseSinkConfig.SALT_BUCKETS);
+
+    config = HBaseSinkConfig.builder(config)
+      .setSaltBuckets(16)
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+    Assert.assertEquals(RowKeyDistributor.Strategy.SALT, config.getRowKeyDistribution());
+  }
+
+  @Test
+  public void testValidateTableCreation() throws Exception {
+    HBaseSinkConfig config = HBaseSinkConfig.builder(VALID_CONFIG)
+      .setCreateTable(true)
+      .setCompression("zip")
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    List<ValidationFailure> failures = failureCollector.getValidationFailures();
+    // Unsupported compression and non constant column family.
+    Assert.assertEquals(2, failures.size());
+
+    config = HBaseSinkConfig.builder(config)
+      .setFamily("'cf'")
+      .setCompression("snappy")
+      .setRowKeyDistribution("Salt")
+      .setSaltBuckets(8)
+      .setRegions(4)
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+
+    HBaseSinkSettings settings = HBaseSinkSettings.of(config, ExpressionResolver.of(config.getFamilyExpression()));
+    Assert.assertTrue(settings.isCreateTable());
+    Assert.assertEquals(BloomType.ROW, settings.getBloomFilter());
+    Assert.assertEquals(Compression.Algorithm.SNAPPY, settings.getCompression());
+    byte[][] splitKeys = settings.getSplitKeys();
+    Assert.assertEquals(3, splitKeys.length);
+    Assert.assertArrayEquals(new byte[] {2}, splitKeys[0]);
+    Assert.assertArrayEquals(new byte[] {6}, splitKeys[2]);
+
+    // Configured split keys take precedence and are sorted.
+    config = HBaseSinkConfig.builder(config).setSplitKeys("m, \\x00\\x01,g").build();
+    settings = HBaseSinkSettings.of(config, ExpressionResolver.of(config.getFamilyExpression()));
+    Assert.assertArrayEquals(new byte[] {0, 1}, settings.getSplitKeys()[0]);
+    Assert.assertArrayEquals(Bytes.toBytes("g"), settings.getSplitKeys()[1]);
+    Assert.assertArrayEquals(Bytes.toBytes("m"), settings.getSplitKeys()[2]);
+
+    // Hash prefixes are split evenly over the unsigned 32-bit range.
+    config = HBaseSinkConfig.builder(config).setSplitKeys(null).setRowKeyDistribution("Hash Prefix").build();
+    settings = HBaseSinkSettings.of(config, ExpressionResolver.of(config.getFamilyExpression()));
+    Assert.assertEquals(3, settings.getSplitKeys().length);
+    Assert.assertArrayEquals(Bytes.toBytes(0x80000000), settings.getSplitKeys()[1]);
+  }
 }
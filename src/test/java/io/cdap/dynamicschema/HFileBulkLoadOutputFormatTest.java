@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileScanner;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link HFileBulkLoadOutputFormat}
+ */
+public class HFileBulkLoadOutputFormatTest {
+  private static final byte[] FAMILY = Bytes.toBytes("cf");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void testSortLastWins() {
+    List<KeyValue> cells = new ArrayList<>();
+    cells.add(new KeyValue(Bytes.toBytes("b"), FAMILY, QUALIFIER, 1L, Bytes.toBytes("first")));
+    cells.add(new KeyValue(Bytes.toBytes("a"), FAMILY, QUALIFIER, 1L, Bytes.toBytes("a")));
+    cells.add(new KeyValue(Bytes.toBytes("b"), FAMILY, QUALIFIER, 1L, Bytes.toBytes("second")));
+    cells.add(new KeyValue(Bytes.toBytes("b"), FAMILY, QUALIFIER, 2L, Bytes.toBytes("newer")));
+    cells.add(new KeyValue(Bytes.toBytes("b"), FAMILY, QUALIFIER, 1L, Bytes.toBytes("last")));
+
+    // Like direct writes, the last of the cells of the same key and timestamp is kept.
+    HFileBulkLoadOutputFormat.sortLastWins(cells);
+    Assert.assertEquals(3, cells.size());
+    Assert.assertEquals("a", Bytes.toString(CellUtil.cloneValue(cells.get(0))));
+    Assert.assertEquals("newer", Bytes.toString(CellUtil.cloneValue(cells.get(1))));
+    Assert.assertEquals("last", Bytes.toString(CellUtil.cloneValue(cells.get(2))));
+  }
+
+  @Test
+  public void testWriterMergesSpills() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    Path workPath = new Path(tmp.newFolder().toURI());
+    HTableDescriptor descriptor = new HTableDescriptor(TableName.valueOf("table"));
+    descriptor.addFamily(new HColumnDescriptor(FAMILY));
+    // Two regions split at 'm', the buffer spills after every put.
+    byte[][] startKeys = {HConstants.EMPTY_START_ROW, Bytes.toBytes("m")};
+    HFileBulkLoadOutputFormat.HFileRecordWriter writer =
+      new HFileBulkLoadOutputFormat.HFileRecordWriter(conf, workPath, "task", startKeys, descriptor, 1L);
+    String[][] writes = {{"a", "1"}, {"n", "2"}, {"a", "3"}, {"z", "4"}, {"n", "5"}, {"a", "6"}};
+    for (String[] write : writes) {
+      writer.write(NullWritable.get(), new Put(Bytes.toBytes(write[0])).addColumn(FAMILY, QUALIFIER,
+                                                                                  Bytes.toBytes(write[1])));
+    }
+    writer.close(null);
+
+    // Spills are merged into one file per family and region, the last write of every cell wins.
+    FileSystem fs = workPath.getFileSystem(conf);
+    Assert.assertFalse(fs.exists(new Path(workPath, ".spill")));
+    FileStatus[] files = fs.listStatus(new Path(workPath, "cf"));
+    Assert.assertEquals(2, files.length);
+    Map<String, String> values = new HashMap<>();
+    for (FileStatus file : files) {
+      HFile.Reader reader = HFile.createReader(fs, file.getPath(), new CacheConfig(conf), conf);
+      try {
+        reader.loadFileInfo();
+        HFileScanner scanner = reader.getScanner(false, false);
+        Assert.assertTrue(scanner.seekTo());
+        do {
+          Cell cell = scanner.getKeyValue();
+          Assert.assertNull(values.put(Bytes.toString(CellUtil.cloneRow(cell)),
+                                       Bytes.toString(CellUtil.cloneValue(cell))));
+        } while (scanner.next());
+      } finally {
+        reader.close();
+      }
+    }
+    Map<String, String> expected = new HashMap<>();
+    expected.put("a", "6");
+    expected.put("n", "5");
+    expected.put("z", "4");
+    Assert.assertEquals(expected, values);
+
+    // Loading accepts as many files per region and family as were staged.
+    conf.setInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, 1);
+    HFileBulkLoadOutputFormat.configureLoad(conf, workPath);
+    Assert.assertEquals(2, conf.getInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, 0));
+  }
+}
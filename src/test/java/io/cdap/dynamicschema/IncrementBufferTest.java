@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Increment;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link IncrementBuffer}
+ */
+public class IncrementBufferTest {
+  private static final byte[] ROW = Bytes.toBytes("test");
+  private static final byte[] CF = Bytes.toBytes("cf");
+
+  private static Increment createIncrement() {
+    Increment increment = new Increment(ROW);
+    increment.setDurability(Durability.ASYNC_WAL);
+    increment.setTTL(60000L);
+    increment.addColumn(CF, Bytes.toBytes("a"), 1L);
+    increment.addColumn(CF, Bytes.toBytes("b"), 2L);
+    increment.addColumn(Bytes.toBytes("counters"), Bytes.toBytes("c"), 3L);
+    return increment;
+  }
+
+  @Test
+  public void testIncrementBuffer() throws Exception {
+    // Counters of the same row, family and column are added up.
+    IncrementBuffer buffer = new IncrementBuffer(4);
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertFalse(buffer.add(createIncrement()));
+    Assert.assertFalse(buffer.add(createIncrement()));
+    Assert.assertEquals(3, buffer.size());
+    Assert.assertEquals(2, buffer.getIncrements());
+    List<Increment> drained = buffer.drain();
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertEquals(0, buffer.size());
+    Assert.assertEquals(1, drained.size());
+    Increment increment = drained.get(0);
+    Assert.assertArrayEquals(ROW, increment.getRow());
+    Assert.assertEquals(Durability.ASYNC_WAL, increment.getDurability());
+    Assert.assertEquals(60000L, increment.getTTL());
+    Map<String, Long> counters = new HashMap<>();
+    for (Map.Entry<byte[], List<Cell>> family : increment.getFamilyCellMap().entrySet()) {
+      for (Cell cell : family.getValue()) {
+        counters.put(Bytes.toString(family.getKey()) + ":" + Bytes.toString(CellUtil.cloneQualifier(cell)),
+                     Bytes.toLong(CellUtil.cloneValue(cell)));
+      }
+    }
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("cf:a", 2L);
+    expected.put("cf:b", 4L);
+    expected.put("counters:c", 6L);
+    Assert.assertEquals(expected, counters);
+
+    // The buffer is full once it holds as many distinct counters as its size.
+    Assert.assertFalse(buffer.add(createIncrement()));
+    Assert.assertTrue(buffer.add(new Increment(Bytes.toBytes("other")).addColumn(CF, Bytes.toBytes("a"), 1L)));
+    Assert.assertEquals(2, buffer.drain().size());
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Assert;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PutAssertions {
+  public static void assertSameCells(Put expected, Put actual) {
+    Assert.assertEquals(expected.getFamilyCellMap().keySet(), actual.getFamilyCellMap().keySet());
+    for (Map.Entry<byte[], List<Cell>> entry : expected.getFamilyCellMap().entrySet()) {
+      List<Cell> expectedCells = entry.getValue();
+      List<Cell> actualCells = actual.getFamilyCellMap().get(entry.getKey());
+      Assert.assertEquals(expectedCells.size(), actualCells.size());
+      for (int i = 0; i < expectedCells.size(); ++i) {
+        Assert.assertArrayEquals(CellUtil.cloneQualifier(expectedCells.get(i)),
+                                 CellUtil.cloneQualifier(actualCells.get(i)));
+        Assert.assertArrayEquals(CellUtil.cloneValue(expectedCells.get(i)), CellUtil.cloneValue(actualCells.get(i)));
+      }
+    }
+  }
+
+  public static byte[] value(Put put, byte[] family, String qualifier) {
+    List<Cell> cells = put.get(family, Bytes.toBytes(qualifier));
+    Assert.assertEquals(1, cells.size());
+    return CellUtil.cloneValue(cells.get(0));
+  }
+
+  public static Set<String> toFamilyNames(Put put) {
+    Set<String> families = new HashSet<>();
+    for (byte[] family : put.getFamilyCellMap().keySet()) {
+      families.add(Bytes.toString(family));
+    }
+    return families;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests {@link PutSplitter}
+ */
+public class PutSplitterTest {
+
+  @Test
+  public void testPutSplitter() throws Exception {
+    byte[] family = Bytes.toBytes("B");
+    Put put = new Put(Bytes.toBytes("A"));
+    put.setDurability(Durability.ASYNC_WAL);
+    for (int i = 0; i < 10; ++i) {
+      put.addColumn(family, Bytes.toBytes("c" + i), new byte[i == 7 ? 1000 : 10]);
+    }
+    long bytes = 0;
+    for (Cell cell : put.getFamilyCellMap().get(family)) {
+      bytes += KeyValueUtil.length(cell);
+    }
+
+    Assert.assertFalse(new PutSplitter(null, null).isEnabled());
+    Assert.assertSame(put, new PutSplitter(10, bytes).split(put, bytes).get(0));
+
+    List<Put> puts = new PutSplitter(4, null).split(put, bytes);
+    Assert.assertEquals(3, puts.size());
+    Assert.assertEquals(4, puts.get(0).size());
+    Assert.assertEquals(2, puts.get(2).size());
+    assertSplitInOrder(put, puts);
+
+    // The cell larger than the limit is written alone.
+    puts = new PutSplitter(null, 500L).split(put, bytes);
+    Assert.assertEquals(3, puts.size());
+    Assert.assertEquals(7, puts.get(0).size());
+    Assert.assertEquals(1, puts.get(1).size());
+    Assert.assertEquals(2, puts.get(2).size());
+    assertSplitInOrder(put, puts);
+  }
+
+  private void assertSplitInOrder(Put expected, List<Put> actual) {
+    Put merged = new Put(expected.getRow());
+    for (Put put : actual) {
+      Assert.assertArrayEquals(expected.getRow(), put.getRow());
+      Assert.assertEquals(expected.getDurability(), put.getDurability());
+      for (Cell cell : put.getFamilyCellMap().firstEntry().getValue()) {
+        merged.addColumn(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell), CellUtil.cloneValue(cell));
+      }
+    }
+    PutAssertions.assertSameCells(expected, merged);
+  }
+}
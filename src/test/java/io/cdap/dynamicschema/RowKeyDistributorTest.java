@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests {@link RowKeyDistributor}
+ */
+public class RowKeyDistributorTest {
+
+  @Test
+  public void testRowKeyDistributor() {
+    byte[] key = Bytes.toBytes("20170202210644");
+    RowKeyDistributor none = RowKeyDistributor.of(RowKeyDistributor.Strategy.NONE, null);
+    Assert.assertSame(key, none.distribute(key));
+    Assert.assertEquals(1, none.getBucketPrefixes().length);
+
+    RowKeyDistributor reverse = RowKeyDistributor.of(RowKeyDistributor.Strategy.REVERSE, null);
+    Assert.assertArrayEquals(Bytes.toBytes("44601220207102"), reverse.distribute(key));
+    Assert.assertArrayEquals(key, reverse.getOriginalKey(reverse.distribute(key)));
+
+    RowKeyDistributor hash = RowKeyDistributor.of(RowKeyDistributor.Strategy.HASH_PREFIX, null);
+    Assert.assertEquals(key.length + RowKeyDistributor.HASH_PREFIX_LENGTH, hash.distribute(key).length);
+    Assert.assertArrayEquals(hash.distribute(key), hash.distribute(key.clone()));
+    Assert.assertArrayEquals(key, hash.getOriginalKey(hash.distribute(key)));
+
+    // Sequential keys are spread across all the buckets.
+    RowKeyDistributor salt = RowKeyDistributor.of(RowKeyDistributor.Strategy.SALT, 8);
+    Assert.assertEquals(8, salt.getBucketPrefixes().length);
+    Set<Byte> buckets = new HashSet<>();
+    for (int i = 0; i < 1000; ++i) {
+      byte[] salted = salt.distribute(Bytes.toBytes(String.valueOf(i)));
+      Assert.assertTrue(salted[0] >= 0 && salted[0] < 8);
+      Assert.assertArrayEquals(Bytes.toBytes(String.valueOf(i)), salt.getOriginalKey(salted));
+      buckets.add(salted[0]);
+    }
+    Assert.assertEquals(8, buckets.size());
+
+    try {
+      RowKeyDistributor.of(RowKeyDistributor.Strategy.SALT, 257);
+      Assert.fail("Expected 257 salt buckets to be rejected");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema;
+
+import io.cdap.cdap.etl.mock.common.MockMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link SinkMetrics}
+ */
+public class SinkMetricsTest {
+
+  @Test
+  public void testSinkMetrics() {
+    MockMetrics metrics = new MockMetrics();
+    SinkMetrics sinkMetrics = new SinkMetrics(metrics, null);
+    long micros = TimeUnit.MICROSECONDS.toNanos(1);
+    sinkMetrics.record(0, 3 * micros, 40 * micros, 41 * micros, 4, 3, 100);
+    sinkMetrics.record(0, micros, 2 * micros, 20000 * micros, 150, 150, 5000);
+    sinkMetrics.flush();
+
+    Assert.assertEquals(154, metrics.getCount("cells"));
+    Assert.assertEquals(153, metrics.getCount("dynamic.columns"));
+    Assert.assertEquals(5100, metrics.getCount("mutation.bytes"));
+    Assert.assertEquals(1, metrics.getCount("rowkey.latency.us.le.1"));
+    Assert.assertEquals(1, metrics.getCount("rowkey.latency.us.le.5"));
+    Assert.assertEquals(4, metrics.getCount("rowkey.latency.us.total"));
+    Assert.assertEquals(1, metrics.getCount("put.latency.us.le.50"));
+    Assert.assertEquals(1, metrics.getCount("emit.latency.us.le.inf"));
+    Assert.assertEquals(1, metrics.getCount("cells.per.record.le.5"));
+    Assert.assertEquals(1, metrics.getCount("cells.per.record.le.200"));
+    Assert.assertEquals(1, metrics.getCount("mutation.bytes.per.record.le.128"));
+
+    // Counts are published once.
+    sinkMetrics.flush();
+    Assert.assertEquals(154, metrics.getCount("cells"));
+
+    // Stages shorter than a microsecond add up, the remainder is published with the next flush.
+    for (int i = 0; i < 3; ++i) {
+      sinkMetrics.record(0, 500, 500, 500, 1, 0, 10);
+    }
+    sinkMetrics.flush();
+    Assert.assertEquals(5, metrics.getCount("rowkey.latency.us.total"));
+    Assert.assertEquals(4, metrics.getCount("rowkey.latency.us.le.1"));
+    sinkMetrics.record(0, 500, 500, 500, 1, 0, 10);
+    sinkMetrics.flush();
+    Assert.assertEquals(6, metrics.getCount("rowkey.latency.us.total"));
+  }
+}
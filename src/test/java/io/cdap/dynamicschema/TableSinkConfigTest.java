@@ -139,4 +139,32 @@ public class TableSinkConfigTest {
     List<ValidationFailure> failureList = failureCollector.getValidationFailures();
     Assert.assertEquals(1, failureList.size());
   }
+
+  @Test
+  public void testValidateRowKeyFields() {
+    TableSinkConfig config = TableSinkConfig.builder(VALID_CONFIG)
+      .setRowkey(null)
+      .setRowkeyFields("id:ordered_long")
+      .build();
+
+    MockFailureCollector failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    Assert.assertTrue(failureCollector.getValidationFailures().isEmpty());
+
+    config = TableSinkConfig.builder(config)
+      .setRowkeyFields("id:string")
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, TableSinkConfig.ROW_KEY_FIELDS);
+
+    config = TableSinkConfig.builder(config)
+      .setRowkeyFields(null)
+      .build();
+
+    failureCollector = new MockFailureCollector(MOCK_STAGE);
+    config.validate(failureCollector, VALID_INPUT_SCHEMA);
+    ValidationAssertions.assertPropertyValidationFailed(failureCollector, TableSinkConfig.ROW_KEY);
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.etl.api.validation.ValidationFailure;
+import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests {@link CompositeRowKey}
+ */
+public class CompositeRowKeyTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "key",
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("a", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+
+  @Test
+  public void testCompositeRowKey() throws Exception {
+    CompositeRowKey key = CompositeRowKey.parse("s, a:ordered_int ,l:long");
+    Assert.assertEquals(3, key.getComponents().size());
+    Assert.assertEquals(CompositeRowKey.Encoding.STRING, key.getComponents().get(0).getEncoding());
+
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("s", "tenant").set("a", -1).set("l", 5L).build();
+    byte[] expected = Bytes.add(Bytes.add(Bytes.toBytes("tenant"), new byte[] {0}),
+                                Bytes.toBytes(-1 ^ Integer.MIN_VALUE), Bytes.toBytes(5L));
+    Assert.assertArrayEquals(expected, key.build(record));
+    // The buffer is reused, the keys are not.
+    byte[] first = key.build(record);
+    Assert.assertArrayEquals(expected, first);
+    key.build(StructuredRecord.builder(SCHEMA).set("s", "t\u00e9nant-with-a-longer-name-exceeding-the-buffer-size-"
+      + "of-sixty-four-bytes").set("a", 1).set("l", 6L).build());
+    Assert.assertArrayEquals(expected, first);
+
+    // Ordered encodings sort negative values first.
+    CompositeRowKey ordered = CompositeRowKey.parse("a:ordered_int");
+    byte[] negative = ordered.build(StructuredRecord.builder(SCHEMA).set("a", -5).build());
+    byte[] positive = ordered.build(StructuredRecord.builder(SCHEMA).set("a", 5).build());
+    Assert.assertTrue(Bytes.compareTo(negative, positive) < 0);
+
+    // Non ASCII strings are UTF-8 encoded.
+    CompositeRowKey string = CompositeRowKey.parse("s");
+    Assert.assertArrayEquals(Bytes.toBytes("t\u00e9st"),
+                             string.build(StructuredRecord.builder(SCHEMA).set("s", "t\u00e9st").build()));
+
+    try {
+      string.build(StructuredRecord.builder(SCHEMA).set("a", 1).build());
+      Assert.fail("Expected null row key field to fail");
+    } catch (ExpressionException e) {
+      // Expected
+    }
+    try {
+      CompositeRowKey.parse("a:float");
+      Assert.fail("Expected unsupported encoding to fail");
+    } catch (ExpressionException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testSeparatorInString() throws Exception {
+    CompositeRowKey key = CompositeRowKey.parse("s,a:int");
+    for (String value : new String[] {"ten\u0000ant", "t\u00e9n\u0000ant"}) {
+      try {
+        key.build(StructuredRecord.builder(SCHEMA).set("s", value).set("a", 1).build());
+        Assert.fail("Expected U+0000 in a string row key field to fail");
+      } catch (ExpressionException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void testValidate() {
+    MockFailureCollector collector = new MockFailureCollector();
+    CompositeRowKey.validate("s,a:ordered_int,l:long", SCHEMA, collector, "rowkeyFields");
+    Assert.assertTrue(collector.getValidationFailures().isEmpty());
+
+    String[] invalid = {"a:float", "missing:long", "s:long", ","};
+    for (String spec : invalid) {
+      collector = new MockFailureCollector();
+      CompositeRowKey.validate(spec, SCHEMA, collector, "rowkeyFields");
+      List<ValidationFailure> failures = collector.getValidationFailures();
+      Assert.assertEquals(spec, 1, failures.size());
+    }
+  }
+}
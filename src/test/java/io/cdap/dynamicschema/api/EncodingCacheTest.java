@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.dynamicschema.api;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link EncodingCache}
+ */
+public class EncodingCacheTest {
+
+  @Test
+  public void testEncodingCache() throws Exception {
+    Schema schema = Schema.recordOf(
+      "family",
+      Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("a", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    EncodingCache cache = EncodingCache.of(new Expression("'cf_' + s"), 2);
+
+    byte[] first = cache.get(StructuredRecord.builder(schema).set("s", "x").set("a", 1).build());
+    Assert.assertArrayEquals(Bytes.toBytes("cf_x"), first);
+    // Fields not read by the expression are not part of the key.
+    Assert.assertSame(first, cache.get(StructuredRecord.builder(schema).set("s", "x").set("a", 2).build()));
+    Assert.assertArrayEquals(Bytes.toBytes("cf_z"), cache.get(StructuredRecord.builder(schema).set("s", "z").build()));
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(2, cache.getMisses());
+
+    // Least recently used values are evicted and evaluated again.
+    cache.get(StructuredRecord.builder(schema).set("s", "y").set("a", 1).build());
+    Assert.assertEquals(2, cache.size());
+    Assert.assertArrayEquals(first, cache.get(StructuredRecord.builder(schema).set("s", "x").set("a", 1).build()));
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(4, cache.getMisses());
+  }
+
+  @Test
+  public void testNonAsciiValues() throws Exception {
+    Schema schema = Schema.recordOf("family", Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    EncodingCache cache = EncodingCache.of(new Expression("'cf_' + s"), 2);
+    Assert.assertArrayEquals(Bytes.toBytes("cf_t\u00e9nant"),
+                             cache.get(StructuredRecord.builder(schema).set("s", "t\u00e9nant").build()));
+  }
+}
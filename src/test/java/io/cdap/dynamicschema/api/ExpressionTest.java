@@ -72,4 +72,57 @@ public class ExpressionTest {
     key = resolver2.apply(record);
     Assert.assertEquals("c1", key);
   }
+
+  @Test
+  public void testNullAndAssignedVariables() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(RecordSchema.class, true);
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    builder.set("a", 9);
+    builder.set("f", 2.8f);
+    builder.set("d", 1.9);
+    builder.set("l", 7887989L);
+    StructuredRecord record = builder.build();
+
+    // Null fields are still defined for the expression.
+    Expression resolver = new Expression("s == null ? \"none\" : s");
+    Assert.assertEquals("none", resolver.apply(record));
+
+    // Variables assigned by the expression shadow the record fields.
+    Expression assigned = new Expression("s = \"x\"; s + a");
+    Assert.assertEquals("x9", assigned.apply(record));
+  }
+
+  @Test
+  public void testResolverMatchesExpression() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(RecordSchema.class, true);
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    builder.set("a", 9);
+    builder.set("s", "test");
+    builder.set("f", 2.8f);
+    builder.set("d", 1.9);
+    builder.set("l", 7887989L);
+    StructuredRecord record = builder.build();
+
+    String[] conditions = {
+      "s", "a + s + f", "s + \":\" + l", "a + d + s", "'c' + a", "s + (a % 10)", "\"c1\""
+    };
+    for (String condition : conditions) {
+      Expression expression = new Expression(condition);
+      Assert.assertEquals(condition, expression.apply(record), ExpressionResolver.of(expression).resolve(record));
+    }
+
+    Assert.assertTrue(ExpressionResolver.of(new Expression("\"c1\"")).isConstant());
+    Assert.assertFalse(ExpressionResolver.of(new Expression("s")).isConstant());
+
+    // Records the fast path cannot resolve are still evaluated by the expression.
+    StructuredRecord nulls = StructuredRecord.builder(schema)
+      .set("a", 9).set("f", 2.8f).set("d", 1.9).set("l", 7887989L).build();
+    Assert.assertNull(ExpressionResolver.of(new Expression("s")).resolve(nulls));
+    try {
+      ExpressionResolver.of(new Expression("s + a")).resolve(nulls);
+      Assert.fail();
+    } catch (ExpressionException e) {
+      // expected
+    }
+  }
 }
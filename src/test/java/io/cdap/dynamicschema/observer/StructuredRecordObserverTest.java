@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.dynamicschema.observer;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.dynamicschema.HBasePutGenerator;
+import io.cdap.dynamicschema.TablePutGenerator;
+import io.cdap.dynamicschema.api.StructuredRecordVisitor;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Put;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tests {@link StructuredRecordObserver}
+ */
+public class StructuredRecordObserverTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("i", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+    Schema.Field.of("l", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("f", Schema.nullableOf(Schema.of(Schema.Type.FLOAT))),
+    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testPrimitiveVisitorMatchesGenericVisitor() throws Exception {
+    StructuredRecord full = StructuredRecord.builder(SCHEMA)
+      .set("i", 1).set("l", 2L).set("f", 3.0f).set("d", 4.0).set("b", true).set("s", "five")
+      .set("m", Collections.singletonMap("six", "6")).build();
+    StructuredRecord nulls = StructuredRecord.builder(SCHEMA)
+      .set("m", Collections.singletonMap("six", "6")).build();
+
+    for (StructuredRecord record : new StructuredRecord[] {full, nulls}) {
+      byte[] key = Bytes.toBytes("A");
+      byte[] family = Bytes.toBytes("B");
+      HBasePutGenerator primitive = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+      new StructuredRecordObserver(primitive).traverse(record);
+      HBasePutGenerator generic = new HBasePutGenerator(key, family, Durability.SYNC_WAL);
+      new StructuredRecordObserver(generic(generic)).traverse(record);
+      Assert.assertFalse(cells(primitive.get()).isEmpty());
+      Assert.assertEquals(cells(generic.get()), cells(primitive.get()));
+
+      TablePutGenerator tablePrimitive = new TablePutGenerator(key);
+      new StructuredRecordObserver(tablePrimitive).traverse(record);
+      TablePutGenerator tableGeneric = new TablePutGenerator(key);
+      new StructuredRecordObserver(generic(tableGeneric)).traverse(record);
+      Assert.assertEquals(cells(tableGeneric.get().getValues()), cells(tablePrimitive.get().getValues()));
+    }
+  }
+
+  /**
+   * @return visitor delegating to the given one through the boxed methods only.
+   */
+  private static StructuredRecordVisitor generic(StructuredRecordVisitor visitor) {
+    return (StructuredRecordVisitor) Proxy.newProxyInstance(
+      StructuredRecordVisitor.class.getClassLoader(), new Class<?>[] {StructuredRecordVisitor.class},
+      (proxy, method, args) -> {
+        try {
+          return method.invoke(visitor, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      });
+  }
+
+  private static Map<String, String> cells(Put put) {
+    Map<String, String> cells = new TreeMap<>();
+    for (Map.Entry<byte[], List<Cell>> entry : put.getFamilyCellMap().entrySet()) {
+      for (Cell cell : entry.getValue()) {
+        cells.put(Bytes.toString(entry.getKey()) + ":" + Bytes.toStringBinary(CellUtil.cloneQualifier(cell)),
+                  Bytes.toStringBinary(CellUtil.cloneValue(cell)));
+      }
+    }
+    return cells;
+  }
+
+  private static Map<String, String> cells(Map<byte[], byte[]> values) {
+    Map<String, String> cells = new TreeMap<>();
+    for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+      cells.put(Bytes.toStringBinary(entry.getKey()), Bytes.toStringBinary(entry.getValue()));
+    }
+    return cells;
+  }
+}